@@ -0,0 +1,72 @@
+package ru.hogwarts.school_2.config;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Кэш второго уровня Hibernate на Ehcache (через JCache). Области создаются здесь,
+// чтобы время жизни и размер задавались в application.properties.
+// Область меток обновления таблиц не должна истекать: по ней Hibernate понимает,
+// что закэшированный результат запроса устарел.
+// Кэш локальный для каждого экземпляра приложения: изменения с других экземпляров
+// и прямой SQL его не сбрасывают, такие записи живут до истечения TTL
+// (cache.*.ttl-seconds). Поэтому проверка имени студента по кэшу запросов
+// (StudentRepository.findByNameIgnoreCase) при нескольких экземплярах может до истечения TTL
+// не увидеть студента, добавленного на другом; проверки FacultyRegistry при промахе идут
+// в базу мимо кэша запросов
+@Configuration
+public class HibernateCacheConfig {
+
+  public static final String FACULTY_REGION = "faculty";
+  public static final String STUDENT_REGION = "student";
+  public static final String QUERY_REGION = "default-query-results-region";
+  public static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+  @Bean(destroyMethod = "close")
+  public CacheManager hibernateCacheManager(
+      @Value("${cache.faculty.ttl-seconds:3600}") long facultyTtl,
+      @Value("${cache.faculty.max-entries:1000}") long facultyEntries,
+      @Value("${cache.student.ttl-seconds:600}") long studentTtl,
+      @Value("${cache.student.max-entries:20000}") long studentEntries,
+      @Value("${cache.query.ttl-seconds:600}") long queryTtl,
+      @Value("${cache.query.max-entries:2000}") long queryEntries) {
+    // Отдельный менеджер на каждый контекст Spring (в тестах их может быть несколько)
+    CacheManager cacheManager = Caching.getCachingProvider(EhcacheCachingProvider.class.getName())
+        .getCacheManager(URI.create("urn:school:hibernate:" + UUID.randomUUID()),
+            getClass().getClassLoader());
+    createRegion(cacheManager, FACULTY_REGION, facultyEntries, facultyTtl);
+    createRegion(cacheManager, STUDENT_REGION, studentEntries, studentTtl);
+    createRegion(cacheManager, QUERY_REGION, queryEntries, queryTtl);
+    cacheManager.createCache(TIMESTAMPS_REGION, Eh107Configuration.fromEhcacheCacheConfiguration(
+        CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(1000))
+            .withExpiry(ExpiryPolicyBuilder.noExpiration())));
+    return cacheManager;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+    return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+  }
+
+  private static void createRegion(CacheManager cacheManager, String region, long maxEntries,
+      long ttlSeconds) {
+    cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(
+        CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(maxEntries))
+            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ttlSeconds)))));
+  }
+
+}//class
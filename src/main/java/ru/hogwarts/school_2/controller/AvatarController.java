@@ -4,6 +4,8 @@ import io.swagger.v3.oas.annotations.Operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -16,6 +18,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school_2.dto.AvatarCacheStatsDTO;
+import ru.hogwarts.school_2.dto.AvatarFile;
+import ru.hogwarts.school_2.dto.AvatarPageDTO;
 import ru.hogwarts.school_2.exception.AvatarProcessingException;
 import ru.hogwarts.school_2.model.Avatar;
 import ru.hogwarts.school_2.service.AvatarService;
@@ -29,6 +34,9 @@ public class AvatarController {
 
   private static final Logger log = LoggerFactory.getLogger(AvatarController.class);
 
+  @Value("${avatars.page.max-size:100}")
+  private int maxPageSize;
+
   public AvatarController(AvatarService avatarService) {
     this.avatarService = avatarService;
   }
@@ -45,33 +53,52 @@ public class AvatarController {
     }
   }
 
+  @Operation(summary = "Привязать студенту уже загруженную картинку по SHA-256",
+      description = "404 означает, что такой картинки на сервере нет и её нужно загрузить")
+  @PostMapping("/{studentId}/by-hash/{contentHash}")
+  public ResponseEntity<String> linkAvatar(@PathVariable Long studentId,
+      @PathVariable String contentHash) {
+    if (!avatarService.linkAvatar(studentId, contentHash)) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok("Аватар успешно привязан");
+  }
+
   @Operation(summary = "Получить аватара по id из базы данных")
   @GetMapping("/{studentId}/from-db")
-  public ResponseEntity<byte[]> getAvatarFromDb(@PathVariable Long studentId) {
-    Avatar avatar = avatarService.findAvatar(studentId);
-
-    HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-    headers.setContentLength(avatar.getData().length);
-
-    return ResponseEntity.ok()
-        .headers(headers)
-        .body(avatar.getData());
+  public ResponseEntity<Resource> getAvatarFromDb(@PathVariable Long studentId) {
+    return toResponse(avatarService.getAvatarFromDb(studentId));
   }
 
+  // Файл отдаётся как Resource: Spring сам копирует его в ответ небольшими блоками,
+  // обрабатывает заголовок Range (206 Partial Content) и If-None-Match/If-Modified-Since (304).
+  // С параметром size отдаётся уменьшенная копия (ближайший настроенный размер не меньше size),
+  // пока она не готова — оригинал
   @Operation(summary = "Получить аватара по id из файла")
   @GetMapping("/{studentId}/from-file")
-  public ResponseEntity<byte[]> getAvatarFromFile(@PathVariable Long studentId) {
-    byte[] data = avatarService.getAvatarFileData(studentId);
-    Avatar avatar = avatarService.findAvatar(studentId);
+  public ResponseEntity<Resource> getAvatarFromFile(@PathVariable Long studentId,
+      @RequestParam(required = false) Integer size) {
+    if (size != null && size <= 0) {
+      return ResponseEntity.badRequest().build();
+    }
+    return toResponse(avatarService.getAvatarFile(studentId, size));
+  }
 
-    HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-    headers.setContentLength(data.length);
+  @Operation(summary = "Статистика кэша картинок аватаров")
+  @GetMapping("/cache/stats")
+  public ResponseEntity<AvatarCacheStatsDTO> getCacheStats() {
+    return ResponseEntity.ok(avatarService.getCacheStats());
+  }
 
-    return ResponseEntity.ok()
-        .headers(headers)
-        .body(data);
+  private ResponseEntity<Resource> toResponse(AvatarFile avatarFile) {
+    ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(avatarFile.getMediaType()))
+        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+        .eTag(avatarFile.getETag());
+    if (avatarFile.getLastModified() > 0) {
+      builder.lastModified(avatarFile.getLastModified());
+    }
+    return builder.body(avatarFile.getResource());
   }
 
   @Operation(summary = "Получить список аватаров по 4 на странице")
@@ -89,6 +116,19 @@ public class AvatarController {
     return new ResponseEntity<>(avatars, HttpStatus.OK); // 200 успешный возврат результата
   }
 
+  @Operation(summary = "Получить список аватаров по курсору",
+      description = "Возвращает метаданные аватаров с id больше курсора; "
+          + "для следующей страницы передайте nextCursor из ответа")
+  @GetMapping
+  public ResponseEntity<AvatarPageDTO> getAvatars(
+      @RequestParam(defaultValue = "0") long cursor,
+      @RequestParam(defaultValue = "20") int size) {
 
+    if (cursor < 0 || size <= 0 || size > maxPageSize) {
+      return ResponseEntity.badRequest().build();
+    }
+
+    return ResponseEntity.ok(avatarService.getAvatarsAfter(cursor, size));
+  }
 
-}//
\ No newline at end of file
+}//
@@ -11,9 +11,11 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -27,6 +29,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import ru.hogwarts.school_2.dto.FacultyDTO;
+import ru.hogwarts.school_2.dto.FacultyOverviewDTO;
 import ru.hogwarts.school_2.model.Faculty;
 import ru.hogwarts.school_2.service.FacultyService;
 
@@ -40,6 +43,9 @@ public class FacultyController {
   private final FacultyService facultyService;
   private static final Logger logger = LoggerFactory.getLogger(FacultyController.class);
 
+  @Value("${spring.data.web.pageable.max-page-size:500}")
+  private int maxPageSize;
+
   @Autowired
   public FacultyController(FacultyService facultyService) {
     this.facultyService = facultyService;
@@ -195,13 +201,40 @@ public class FacultyController {
     return ResponseEntity.ok(allFaculties);
   }
 
+  /**
+   * Метод получения сводки по всем факультетам для панели.
+   *
+   * @param roster     добавить ли к каждому факультету страницу списка студентов
+   * @param rosterPage номер страницы списка студентов (с 0)
+   * @param rosterSize размер страницы списка студентов
+   * @return факультеты с количеством студентов, средним возрастом и разбивкой по полу
+   */
+  @Operation(summary = "Сводка по факультетам",
+      description = "Все факультеты с количеством студентов, средним возрастом и числом юношей "
+          + "и девушек одним запросом; roster=true добавляет страницу студентов каждого факультета")
+  @GetMapping(value = "/overview", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<FacultyOverviewDTO>> getFacultyOverview(
+      @RequestParam(defaultValue = "false") boolean roster,
+      @RequestParam(defaultValue = "0") int rosterPage,
+      @RequestParam(defaultValue = "20") int rosterSize) {
+    logger.info("Запрос сводки по факультетам, roster={}", roster);
+    if (rosterPage < 0 || rosterSize < 1 || rosterSize > maxPageSize) {
+      throw new IllegalArgumentException(
+          "rosterPage должен быть не меньше 0, rosterSize — от 1 до " + maxPageSize);
+    }
+    return ResponseEntity.ok(facultyService.getFacultyOverview(roster, rosterPage, rosterSize));
+  }
+
   /**
    * Метод удаления факультета по ID.
    *
    * @param id идентификатор факультета
    * @return успешный статус удаления
    */
+  // Транзакция класса здесь отключена: студенты удаляются порциями в своих транзакциях,
+  // внешняя держала бы соединение из пула всё время удаления
   @Operation(summary = "Удаление факультета по ID")
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
   @DeleteMapping(value = "/deleteFacultyById", produces = MediaType.TEXT_PLAIN_VALUE)
   public ResponseEntity<String> deleteFacultyById(@RequestParam @NotNull Long id) {
     logger.info("Запрос на удаление факультета с ID: {}", id);
@@ -1,12 +1,21 @@
 package ru.hogwarts.school_2.controller;
 
+import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school_2.dto.CacheRegionStatsDTO;
+import ru.hogwarts.school_2.service.HibernateCacheService;
 
 @RestController
 public class InfoController {
 
+  private final HibernateCacheService hibernateCacheService;
+
+  public InfoController(HibernateCacheService hibernateCacheService) {
+    this.hibernateCacheService = hibernateCacheService;
+  }
+
   @Value("${server.port}") // Получаем значение порта из application.properties
   private int serverPort;
 
@@ -23,5 +32,11 @@ public class InfoController {
     return "DB URL: " + dbUrl;
   }
 
+  // Попадания и промахи кэша второго уровня по областям (факультеты, студенты, запросы)
+  @GetMapping("/cache-stats")
+  public List<CacheRegionStatsDTO> getCacheStats() {
+    return hibernateCacheService.getStats();
+  }
+
 
 }//class
\ No newline at end of file
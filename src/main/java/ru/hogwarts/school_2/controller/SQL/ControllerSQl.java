@@ -30,12 +30,11 @@ public class ControllerSQl {
   @Operation(summary = "получить количество всех студентов")
   @GetMapping("/countStudents")
   public ResponseEntity<Long> countStudents() {
-    if (studentService.getCountByAllStudens() == 0) {
+    long countStudents = studentService.getCountByAllStudens();
+    if (countStudents == 0) {
       return ResponseEntity.noContent().build();
-    } else {
-      Long countStudents = studentService.getCountByAllStudens();
-      return ResponseEntity.ok(countStudents);
     }
+    return ResponseEntity.ok(countStudents);
   }
 
   @Operation(summary = "Получить последних 5 студентов")
@@ -4,15 +4,17 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import ru.hogwarts.school_2.dto.FacultyDTO;
-import ru.hogwarts.school_2.model.Student;
 import ru.hogwarts.school_2.model.Faculty;
-import ru.hogwarts.school_2.repository.FacultyRepository;
 import ru.hogwarts.school_2.repository.StudentRepository;
+import ru.hogwarts.school_2.service.FacultyRegistry;
+import ru.hogwarts.school_2.service.StudentNameIndex;
+import ru.hogwarts.school_2.service.StudentStatistics;
 
 import java.util.Comparator;
 import java.util.List;
@@ -26,53 +28,58 @@ import java.util.stream.LongStream;
 public class StreamApiController {
 
   private final StudentRepository studentRepository;
-  private final FacultyRepository facultyRepository;
+  private final FacultyRegistry facultyRegistry;
+  private final StudentNameIndex studentNameIndex;
+  private final StudentStatistics studentStatistics;
+
+  @Value("${spring.data.web.pageable.max-page-size:500}")
+  private int maxPageSize;
 
   public StreamApiController(StudentRepository studentRepository,
-      FacultyRepository facultyRepository) {
+      FacultyRegistry facultyRegistry, StudentNameIndex studentNameIndex,
+      StudentStatistics studentStatistics) {
     this.studentRepository = studentRepository;
-    this.facultyRepository = facultyRepository;
+    this.facultyRegistry = facultyRegistry;
+    this.studentNameIndex = studentNameIndex;
+    this.studentStatistics = studentStatistics;
   }
 
   @Operation(summary = "Фильтр имён по букве",
-      description = "Возвращает имена студентов, начинающиеся с указанной русской буквы")
+      description = "Возвращает имена студентов (в верхнем регистре), начинающиеся с указанной "
+          + "русской буквы, по алфавиту; page и size задают страницу")
   @GetMapping("/students/names-starting-with")
   public List<String> getStudentNamesStartingWithLetter(
       @Parameter(description = "Русская буква для фильтрации", example = "А")
-      @RequestParam String letter) {
+      @RequestParam String letter,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "100") int size) {
 
     if (letter == null || letter.length() != 1) {
       throw new IllegalArgumentException("Параметр 'letter' должен быть одной русской буквой");
     }
+    if (page < 0 || size < 1 || size > maxPageSize) {
+      throw new IllegalArgumentException(
+          "Номер страницы не может быть отрицательным, размер страницы — от 1 до " + maxPageSize);
+    }
 
-    char targetLetter = Character.toUpperCase(letter.charAt(0));
-
-    return studentRepository.findAll().stream()
-        .map(Student::getName)
-        .filter(Objects::nonNull)
-        .filter(name -> !name.isEmpty())
-        .map(String::toUpperCase)
-        .filter(name -> name.charAt(0) == targetLetter)
-        .sorted()
-        .toList();
+    // Отсортированный словарь имён в памяти: читается только диапазон с нужной буквы
+    return studentNameIndex.namesStartingWith(letter, page * size, size);
   }
 
   @Operation(summary = "Средний возраст студентов",
       description = "Вычисляет средний возраст всех студентов")
   @GetMapping("/students/average-age2")
   public Double getAverageAgeOfStudents() {
-    return studentRepository.findAll().stream()
-        .filter(Objects::nonNull)
-        .mapToInt(Student::getAge)
-        .average()
-        .orElse(0.0);
+    // Итоги по возрастам ведутся в памяти, всех студентов читать не нужно
+    Double averageAge = studentStatistics.getAverageAge();
+    return averageAge != null ? averageAge : 0.0;
   }
 
   @Operation(summary = "Факультет с самым длинным названием",
       description = "Возвращает факультет с самым длинным названием")
   @GetMapping("/faculties/longest-name-details")
   public FacultyDTO getFacultyWithLongestName() {
-    return facultyRepository.findAll().stream()
+    return facultyRegistry.findAll().stream()
         .filter(Objects::nonNull)
         .max(Comparator.comparingInt(f -> f.getName().length()))
         .map(FacultyDTO::fromFaculty)
@@ -83,7 +90,7 @@ public class StreamApiController {
       description = "Возвращает только название самого длинного факультета")
   @GetMapping("/faculties/longest-name")
   public String getLongestFacultyName() {
-    return facultyRepository.findAll().stream()
+    return facultyRegistry.findAll().stream()
         .map(Faculty::getName)
         .filter(Objects::nonNull)
         .max(Comparator.comparingInt(String::length))
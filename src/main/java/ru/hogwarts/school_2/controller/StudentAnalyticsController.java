@@ -0,0 +1,79 @@
+package ru.hogwarts.school_2.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school_2.service.StudentColumns;
+import ru.hogwarts.school_2.service.StudentColumns.Filter;
+
+// Аналитика по снимку студентов в памяти (StudentColumns), база не используется.
+// Все методы принимают одинаковые необязательные фильтры: minAge, maxAge, gender, facultyId
+@RestController
+@RequestMapping("/analytics/students")
+@Tag(name = "Analytics API", description = "Аналитика по студентам без обращения к базе")
+public class StudentAnalyticsController {
+
+  private final StudentColumns studentColumns;
+
+  public StudentAnalyticsController(StudentColumns studentColumns) {
+    this.studentColumns = studentColumns;
+  }
+
+  @Operation(summary = "Количество студентов, подходящих под фильтр")
+  @GetMapping("/count")
+  public ResponseEntity<Long> count(
+      @RequestParam(required = false) Integer minAge,
+      @RequestParam(required = false) Integer maxAge,
+      @RequestParam(required = false) String gender,
+      @RequestParam(required = false) Long facultyId) {
+    return ResponseEntity.ok(studentColumns.count(toFilter(minAge, maxAge, gender, facultyId)));
+  }
+
+  @Operation(summary = "Распределение студентов по возрасту",
+      description = "Возраст -> количество студентов, по возрастанию возраста")
+  @GetMapping("/age-distribution")
+  public ResponseEntity<Map<Integer, Long>> ageDistribution(
+      @RequestParam(required = false) Integer minAge,
+      @RequestParam(required = false) Integer maxAge,
+      @RequestParam(required = false) String gender,
+      @RequestParam(required = false) Long facultyId) {
+    return ResponseEntity.ok(
+        studentColumns.ageDistribution(toFilter(minAge, maxAge, gender, facultyId)));
+  }
+
+  @Operation(summary = "Юноши и девушки по факультетам",
+      description = "ID факультета -> {м: количество, ж: количество}; 0 — студенты без факультета")
+  @GetMapping("/gender-by-faculty")
+  public ResponseEntity<Map<Long, Map<String, Long>>> genderByFaculty(
+      @RequestParam(required = false) Integer minAge,
+      @RequestParam(required = false) Integer maxAge,
+      @RequestParam(required = false) Long facultyId) {
+    Map<Long, Map<String, Long>> result = new LinkedHashMap<>();
+    studentColumns.genderByFaculty(toFilter(minAge, maxAge, null, facultyId))
+        .forEach((id, counts) -> result.put(id, Map.of(
+            "м", counts[StudentColumns.MALE],
+            "ж", counts[StudentColumns.FEMALE])));
+    return ResponseEntity.ok(result);
+  }
+
+  private static Filter toFilter(Integer minAge, Integer maxAge, String gender, Long facultyId) {
+    if (minAge != null && maxAge != null && minAge > maxAge) {
+      throw new IllegalArgumentException("Минимальный возраст не может превышать максимальный");
+    }
+    Byte genderCode = null;
+    if (gender != null) {
+      genderCode = StudentColumns.encodeGender(gender);
+      if (gender.length() != 1 || genderCode == StudentColumns.UNKNOWN_GENDER) {
+        throw new IllegalArgumentException("Пол должен быть 'м' или 'ж'");
+      }
+    }
+    return new Filter(minAge, maxAge, genderCode, facultyId);
+  }
+
+}//class
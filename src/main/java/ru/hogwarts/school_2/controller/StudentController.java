@@ -3,11 +3,21 @@ package ru.hogwarts.school_2.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
@@ -22,9 +32,16 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ru.hogwarts.school_2.dto.StudentBatchDTO;
+import ru.hogwarts.school_2.dto.StudentBulkResultDTO;
+import ru.hogwarts.school_2.dto.StudentChangesDTO;
 import ru.hogwarts.school_2.dto.StudentDTO;
 import ru.hogwarts.school_2.model.Student;
+import ru.hogwarts.school_2.service.StudentChangesService;
+import ru.hogwarts.school_2.service.StudentCsvImportService;
+import ru.hogwarts.school_2.service.StudentExportService;
 import ru.hogwarts.school_2.service.StudentService;
 
 @RestController
@@ -34,10 +51,30 @@ import ru.hogwarts.school_2.service.StudentService;
 
 public class StudentController {
 
+  private static final List<Long> DEMO_STUDENT_IDS = List.of(1L, 2L, 3L, 4L, 5L, 6L);
+
   private final StudentService studentService;
+  private final StudentCsvImportService studentCsvImportService;
+  private final StudentExportService studentExportService;
+  private final StudentChangesService studentChangesService;
+
+  @Value("${students.bulk.max-size:10000}")
+  private int bulkMaxSize;
+
+  @Value("${students.batch.max-ids:5000}")
+  private int batchMaxIds;
+
+  @Value("${sync.max-limit:1000}")
+  private int syncMaxLimit;
 
-  public StudentController(StudentService studentService) {
+  public StudentController(StudentService studentService,
+      StudentCsvImportService studentCsvImportService,
+      StudentExportService studentExportService,
+      StudentChangesService studentChangesService) {
     this.studentService = studentService;
+    this.studentCsvImportService = studentCsvImportService;
+    this.studentExportService = studentExportService;
+    this.studentChangesService = studentChangesService;
   }
 
   @Transactional
@@ -68,6 +105,33 @@ public class StudentController {
     }
   }
 
+  @Operation(summary = "Массово добавить студентов",
+      description = "Каждый студент должен содержать facultyId. Ошибочные строки пропускаются "
+          + "и перечисляются в ответе; с upsert=true существующие по имени студенты обновляются")
+  @PostMapping("/bulk")
+  public ResponseEntity<StudentBulkResultDTO> addStudents(
+      @RequestBody List<StudentDTO> studentDTOs,
+      @RequestParam(defaultValue = "false") boolean upsert) {
+    if (studentDTOs.isEmpty() || studentDTOs.size() > bulkMaxSize) {
+      throw new IllegalArgumentException(
+          "Количество студентов в запросе должно быть от 1 до " + bulkMaxSize);
+    }
+    return ResponseEntity.ok(studentService.addStudents(studentDTOs, upsert));
+  }
+
+  // Тело запроса читается потоком и сразу передаётся в COPY, поэтому лимиты multipart
+  // на размер файла здесь не действуют
+  @Operation(summary = "Импортировать студентов из CSV",
+      description = "Колонки name,age,gender,facultyId в UTF-8, поля можно брать в кавычки. "
+          + "header=true — первая строка заголовок. Ошибочные строки пропускаются и перечисляются "
+          + "в ответе (номер строки в файле); с upsert=true существующие по имени студенты обновляются")
+  @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+  public ResponseEntity<StudentBulkResultDTO> importStudents(InputStream body,
+      @RequestParam(defaultValue = "true") boolean header,
+      @RequestParam(defaultValue = "false") boolean upsert) {
+    return ResponseEntity.ok(studentCsvImportService.importCsv(body, header, upsert));
+  }
+
   @Transactional
   @Operation(summary = "Обновить данные студента")
   @PutMapping("/{id}")
@@ -98,25 +162,123 @@ public class StudentController {
         ResponseEntity.ok(students); // всегда возврат HTTP-код 200 OK
   }
 
+  @Operation(summary = "Получить страницу студентов",
+      description = "Параметры page, size и sort (например sort=name,desc); "
+          + "сортировка по id, name, age, gender")
+  @GetMapping("/page")
+  public ResponseEntity<Page<StudentDTO>> getStudentsPage(
+      @ParameterObject @PageableDefault(size = 50, sort = "id") Pageable pageable) {
+    return ResponseEntity.ok(studentService.getStudentsPage(pageable));
+  }
+
+  @Operation(summary = "Поиск студентов по нескольким условиям",
+      description = "Любое сочетание name (часть имени), gender, minAge, maxAge, facultyId; "
+          + "выполняется одним запросом, результат постраничный (page, size, sort)")
+  @GetMapping("/search")
+  public ResponseEntity<Page<StudentDTO>> searchStudents(
+      @RequestParam(required = false) String name,
+      @RequestParam(required = false) String gender,
+      @RequestParam(required = false) Integer minAge,
+      @RequestParam(required = false) Integer maxAge,
+      @RequestParam(required = false) Long facultyId,
+      @ParameterObject @PageableDefault(size = 50, sort = "id") Pageable pageable) {
+    if (minAge != null && maxAge != null && minAge > maxAge) {
+      throw new IllegalArgumentException("Минимальный возраст не может превышать максимальный");
+    }
+    return ResponseEntity.ok(
+        studentService.searchStudents(name, gender, minAge, maxAge, facultyId, pageable));
+  }
+
+  // Клиент хранит nextCursor и повторяет запрос, пока hasMore=true
+  @Operation(summary = "Получить студентов, изменённых или удалённых после курсора",
+      description = "Без cursor — все студенты с начала. Ответ: изменённые студенты, ID удалённых "
+          + "и nextCursor для следующего запроса. Изменения моложе нескольких секунд "
+          + "отдаются следующим запросом")
+  @GetMapping("/changes")
+  public ResponseEntity<StudentChangesDTO> getStudentChanges(
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "500") int limit) {
+    if (limit < 1 || limit > syncMaxLimit) {
+      throw new IllegalArgumentException("limit должен быть от 1 до " + syncMaxLimit);
+    }
+    return ResponseEntity.ok(studentChangesService.getStudentChanges(cursor, limit));
+  }
+
+  @Operation(summary = "Получить всех студентов потоком NDJSON",
+      description = "Один JSON-объект студента на строку, строки отдаются по мере чтения из базы")
+  @GetMapping(value = "/stream", produces = "application/x-ndjson")
+  public ResponseEntity<StreamingResponseBody> streamAllStudents() {
+    StreamingResponseBody body = studentService::writeAllStudentsAsNdjson;
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+        .body(body);
+  }
+
+  // Выгрузка для отчётов: строки идут из базы прямо в ответ, память не зависит от размера школы
+  @Operation(summary = "Выгрузить всех студентов с названиями факультетов",
+      description = "format=csv (COPY из PostgreSQL) или ndjson; avatars=true добавляет признак "
+          + "наличия аватара; gzip=true сжимает ответ")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportStudents(
+      @RequestParam(defaultValue = "csv") String format,
+      @RequestParam(defaultValue = "false") boolean avatars,
+      @RequestParam(defaultValue = "false") boolean gzip) {
+    boolean csv = "csv".equalsIgnoreCase(format);
+    if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+      throw new IllegalArgumentException("Поддерживаются форматы csv и ndjson");
+    }
+    StreamingResponseBody body = csv
+        ? out -> studentExportService.exportCsv(out, avatars, gzip)
+        : out -> studentExportService.exportNdjson(out, avatars, gzip);
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+            : MediaType.parseMediaType("application/x-ndjson"))
+        .header(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"students." + (csv ? "csv" : "ndjson") + "\"");
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return response.body(body);
+  }
+
+  @Operation(summary = "Получить несколько студентов по списку ID",
+      description = "Например /students?ids=1,2,3. Все студенты загружаются одним запросом; "
+          + "порядок ответа — порядок ID в запросе, ненайденные ID перечислены в missingIds")
+  @GetMapping(params = "ids")
+  public ResponseEntity<StudentBatchDTO> getStudentsByIds(@RequestParam List<Long> ids) {
+    return ResponseEntity.ok(studentService.findStudentsByIds(checkBatchSize(ids)));
+  }
+
+  @Operation(summary = "Получить несколько студентов по списку ID в теле запроса",
+      description = "То же, что GET /students?ids=..., для больших списков")
+  @PostMapping("/by-ids")
+  public ResponseEntity<StudentBatchDTO> getStudentsByIdsPost(@RequestBody List<Long> ids) {
+    return ResponseEntity.ok(studentService.findStudentsByIds(checkBatchSize(ids)));
+  }
+
+  private List<Long> checkBatchSize(List<Long> ids) {
+    if (ids.isEmpty() || ids.size() > batchMaxIds) {
+      throw new IllegalArgumentException(
+          "Количество ID в запросе должно быть от 1 до " + batchMaxIds);
+    }
+    return ids;
+  }
+
   @Operation(summary = "Получить студента по ID")
   @GetMapping("/{id}")
   public ResponseEntity<StudentDTO> getStudentById
       (@PathVariable Long id) {
-    if (studentService.getStudentById(id).isEmpty()) {
-      return ResponseEntity.notFound().build();//"Студент с таким ID не найден."
-    }
-    StudentDTO findStudent = StudentDTO.fromStudent(studentService.getStudentById(id).get());
-    return ResponseEntity.ok(findStudent);
+    // Один вызов сервиса на запрос, одновременные запросы одного id склеиваются в сервисе
+    return studentService.findStudentDtoById(id)
+        .map(ResponseEntity::ok)
+        .orElseGet(() -> ResponseEntity.notFound().build());//"Студент с таким ID не найден."
   }
 
   @Operation(summary = "Получить студентов по имени")
   @GetMapping("/by-name/{name}")
   public ResponseEntity<List<StudentDTO>> getStudentsByName(@PathVariable String name) {
-    List<Student> students = studentService.findByNameContainingIgnoreCase(name);
-    List<StudentDTO> studentDTOS = students.stream()
-        .map(StudentDTO::fromStudent)
-        .collect(Collectors.toList());
-
+    List<StudentDTO> studentDTOS = studentService.findByNameContainingIgnoreCase(name);
     return ResponseEntity.ok(studentDTOS); // Всегда возвращаем 200 OK
   }
 
@@ -222,7 +384,7 @@ public class StudentController {
 
 //sql
 
-  @Transactional
+  // Без транзакции: студенты удаляются порциями, каждая в своей транзакции
   @Operation(summary = "удалить всех студентов факультета")
   @DeleteMapping("/delete/all/{facultyId}")
   public ResponseEntity<Void> deleteStudentsByFacultyId(@PathVariable Long facultyId) {
@@ -243,34 +405,37 @@ public class StudentController {
   @Operation(summary = "Получить количество всех студентов")
   @GetMapping("/all-students")
   public ResponseEntity<Long> getCountByAllStudens() {
-    if (studentService.getCountByAllStudens() == 0) {
+    long count = studentService.getCountByAllStudens();
+    if (count == 0) {
       return ResponseEntity.notFound().build();
-    } else {
-      Long count = studentService.getCountByAllStudens();
-      return ResponseEntity.ok(count);
     }
+    return ResponseEntity.ok(count);
   }
 
   @Operation(summary = "получаем 5 последних по айди студентов")
   @GetMapping("/last-five")
   public ResponseEntity<List<StudentDTO>> getLastFiveStudents() {
-    if (studentService.findTop5ByOrderByIdDesc().isEmpty()) {
+    List<Student> students = studentService.findTop5ByOrderByIdDesc();
+    if (students.isEmpty()) {
       return ResponseEntity.noContent().build();
-    } else {
-      List<Student> students = studentService.findTop5ByOrderByIdDesc();
-      List<StudentDTO> studentDTOS = students.stream()
-          .map(StudentDTO::fromStudent)
-          .collect(Collectors.toList());
-      return ResponseEntity.ok(studentDTOS);
     }
+    List<StudentDTO> studentDTOS = students.stream()
+        .map(StudentDTO::fromStudent)
+        .collect(Collectors.toList());
+    return ResponseEntity.ok(studentDTOS);
   }
 
   //parallel stream
 
-  private void printFormatted(Long id, String threadType) {
-    String name = studentService.getStudentById(id)
-        .map(Student::getName)
-        .orElse("Не найден");
+  // Имена студентов 1..6 для демонстраций с потоками загружаются одним запросом,
+  // потоки только печатают готовые значения
+  private Map<Long, String> loadDemoNames() {
+    return studentService.findStudentsByIds(DEMO_STUDENT_IDS).getStudents().stream()
+        .collect(Collectors.toMap(StudentDTO::getId, StudentDTO::getName));
+  }
+
+  private void printFormatted(Map<Long, String> names, Long id, String threadType) {
+    String name = names.getOrDefault(id, "Не найден");
     System.out.println("Поток " + threadType + ", студент " + id + ": " + name);
   }
 
@@ -278,20 +443,22 @@ public class StudentController {
       description = "Первые два имени — в основном потоке, остальные — в параллельных")
   @GetMapping("/students/print-parallel")
   public ResponseEntity<Void> printStudentNamesParallel() {
+    Map<Long, String> names = loadDemoNames();
+
     // Основной поток
-    printFormatted(1L, "основной");
-    printFormatted(2L, "основной");
+    printFormatted(names, 1L, "основной");
+    printFormatted(names, 2L, "основной");
 
     // Параллельный поток 1
     new Thread(() -> {
-      printFormatted(3L, "параллельный 1");
-      printFormatted(4L, "параллельный 1");
+      printFormatted(names, 3L, "параллельный 1");
+      printFormatted(names, 4L, "параллельный 1");
     }).start();
 
     // Параллельный поток 2
     new Thread(() -> {
-      printFormatted(5L, "параллельный 2");
-      printFormatted(6L, "параллельный 2");
+      printFormatted(names, 5L, "параллельный 2");
+      printFormatted(names, 6L, "параллельный 2");
     }).start();
 
     return ResponseEntity.ok().build();
@@ -299,10 +466,8 @@ public class StudentController {
 
 
   // Синхронизированный метод для вывода имени студента
-  private synchronized void printStudentName(Long id) {
-    String name = studentService.getStudentById(id)
-        .map(Student::getName)
-        .orElse("Студент не найден");
+  private synchronized void printStudentName(Map<Long, String> names, Long id) {
+    String name = names.getOrDefault(id, "Студент не найден");
     System.out.println(Thread.currentThread().getName() + ", студент " + id + ": " + name);
   }
 
@@ -310,20 +475,22 @@ public class StudentController {
       description = "Выводит имена студентов в синхронизированном режиме")
   @GetMapping("/students/print-synchronized")
   public ResponseEntity<Void> printStudentNamesSynchronized() {
+    Map<Long, String> names = loadDemoNames();
+
     // Основной поток (студенты 1 и 2)
-    printStudentName(1L);
-    printStudentName(2L);
+    printStudentName(names, 1L);
+    printStudentName(names, 2L);
 
     // Параллельный поток 1 (студенты 3 и 4)
     new Thread(() -> {
-      printStudentName(3L);
-      printStudentName(4L);
+      printStudentName(names, 3L);
+      printStudentName(names, 4L);
     }).start();
 
     // Параллельный поток 2 (студенты 5 и 6)
     new Thread(() -> {
-      printStudentName(5L);
-      printStudentName(6L);
+      printStudentName(names, 5L);
+      printStudentName(names, 6L);
     }).start();
 
     return ResponseEntity.ok().build();
@@ -0,0 +1,35 @@
+package ru.hogwarts.school_2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Статистика кэша картинок аватаров")
+public class AvatarCacheStatsDTO {
+
+  @Schema(description = "Попадания в кэш", example = "1500")
+  private long hits;
+
+  @Schema(description = "Промахи", example = "12")
+  private long misses;
+
+  @Schema(description = "Вытесненные записи", example = "3")
+  private long evictions;
+
+  @Schema(description = "Записей в кэше", example = "40")
+  private int entries;
+
+  @Schema(description = "Занято байт", example = "2097152")
+  private long usedBytes;
+
+  @Schema(description = "Лимит байт", example = "33554432")
+  private long maxBytes;
+
+  @Schema(description = "Доля попаданий", example = "0.99")
+  private double hitRate;
+
+}//
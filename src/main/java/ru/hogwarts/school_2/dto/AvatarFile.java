@@ -0,0 +1,23 @@
+package ru.hogwarts.school_2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.core.io.Resource;
+
+// Файл аватара на диске вместе с метаданными, прочитанными одним вызовом
+// (размер и дата изменения нужны для Content-Length, ETag и Last-Modified)
+@Getter
+@AllArgsConstructor
+public class AvatarFile {
+
+  private final Resource resource;
+
+  private final String mediaType;
+
+  private final long fileSize;
+
+  private final long lastModified;
+
+  private final String eTag;
+
+}//
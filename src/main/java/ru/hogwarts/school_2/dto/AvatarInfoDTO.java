@@ -0,0 +1,34 @@
+package ru.hogwarts.school_2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Метаданные аватара без содержимого картинки")
+public class AvatarInfoDTO {
+
+  @Schema(description = "ID аватара", example = "1")
+  private Long id;
+
+  @Schema(description = "ID студента", example = "1")
+  private Long studentId;
+
+  @Schema(description = "Размер файла в байтах", example = "48213")
+  private Long fileSize;
+
+  @Schema(description = "Тип содержимого", example = "image/jpeg")
+  private String mediaType;
+
+  @Schema(description = "Адрес для загрузки картинки", example = "/avatars/1/from-file")
+  private String url;
+
+  // Конструктор для JPQL-проекции, адрес картинки собирается из ID студента
+  public AvatarInfoDTO(Long id, Long studentId, Long fileSize, String mediaType) {
+    this(id, studentId, fileSize, mediaType, "/avatars/" + studentId + "/from-file");
+  }
+
+}//
@@ -0,0 +1,21 @@
+package ru.hogwarts.school_2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Страница списка аватаров")
+public class AvatarPageDTO {
+
+  @Schema(description = "Аватары на странице")
+  private List<AvatarInfoDTO> items;
+
+  @Schema(description = "Курсор следующей страницы, null если страница последняя", example = "20")
+  private Long nextCursor;
+
+}//
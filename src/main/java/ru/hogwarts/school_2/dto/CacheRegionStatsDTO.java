@@ -0,0 +1,29 @@
+package ru.hogwarts.school_2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Статистика области кэша второго уровня Hibernate")
+public class CacheRegionStatsDTO {
+
+  @Schema(description = "Область кэша", example = "faculty")
+  private String region;
+
+  @Schema(description = "Попадания в кэш", example = "1500")
+  private long hits;
+
+  @Schema(description = "Промахи", example = "12")
+  private long misses;
+
+  @Schema(description = "Записано в кэш", example = "40")
+  private long puts;
+
+  @Schema(description = "Доля попаданий", example = "0.99")
+  private double hitRate;
+
+}//
@@ -0,0 +1,41 @@
+package ru.hogwarts.school_2.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Факультет со сводкой по студентам")
+public class FacultyOverviewDTO {
+
+  @Schema(description = "ID факультета", example = "1")
+  private Long id;
+
+  @Schema(description = "Название факультета", example = "Гриффиндор")
+  private String name;
+
+  @Schema(description = "Цвет факультета", example = "Красный")
+  private String color;
+
+  @Schema(description = "Количество студентов", example = "25")
+  private long studentCount;
+
+  @Schema(description = "Средний возраст студентов, null если студентов нет", example = "14.5")
+  private Double averageAge;
+
+  @Schema(description = "Количество юношей", example = "12")
+  private long maleCount;
+
+  @Schema(description = "Количество девушек", example = "13")
+  private long femaleCount;
+
+  @Schema(description = "Страница списка студентов по возрастанию ID (только при roster=true)")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private List<StudentDTO> roster;
+
+}//
@@ -0,0 +1,21 @@
+package ru.hogwarts.school_2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Студенты по списку ID")
+public class StudentBatchDTO {
+
+  @Schema(description = "Найденные студенты в порядке ID из запроса")
+  private List<StudentDTO> students;
+
+  @Schema(description = "ID, для которых студенты не найдены", example = "[7, 42]")
+  private List<Long> missingIds;
+
+}//
@@ -0,0 +1,24 @@
+package ru.hogwarts.school_2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Результат массовой загрузки студентов")
+public class StudentBulkResultDTO {
+
+  @Schema(description = "Добавлено студентов", example = "980")
+  private int created;
+
+  @Schema(description = "Обновлено существующих студентов", example = "15")
+  private int updated;
+
+  @Schema(description = "Отклонённые строки")
+  private List<StudentRowErrorDTO> errors;
+
+}//
@@ -0,0 +1,32 @@
+package ru.hogwarts.school_2.dto;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Строка выдачи изменений: поля StudentDTO и время изменения для курсора.
+// Наружу не отдаётся, клиенты получают StudentDTO
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentChangeDTO {
+
+  private Long id;
+
+  private String name;
+
+  private Integer age;
+
+  private String gender;
+
+  private Long facultyId;
+
+  private Instant updatedAt;
+
+
+  public StudentDTO toStudentDTO() {
+    return new StudentDTO(id, name, age, gender, facultyId);
+  }
+
+}//
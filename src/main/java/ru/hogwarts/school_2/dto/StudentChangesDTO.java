@@ -0,0 +1,27 @@
+package ru.hogwarts.school_2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Изменения студентов после курсора")
+public class StudentChangesDTO {
+
+  @Schema(description = "Добавленные или изменённые студенты")
+  private List<StudentDTO> changed;
+
+  @Schema(description = "ID удалённых студентов", example = "[5, 8]")
+  private List<Long> deletedIds;
+
+  @Schema(description = "Курсор для следующего запроса", example = "1718000000000000_42")
+  private String nextCursor;
+
+  @Schema(description = "Есть ли ещё изменения после nextCursor")
+  private boolean hasMore;
+
+}//
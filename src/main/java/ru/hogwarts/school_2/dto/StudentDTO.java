@@ -34,6 +34,11 @@ public class StudentDTO {
   private Long facultyId;
 
 
+  // Конструктор для JPQL-проекций: возраст в запросе приходит как Integer
+  public StudentDTO(Long id, String name, Integer age, String gender, Long facultyId) {
+    this(id, name, age.intValue(), gender, facultyId);
+  }
+
   public static StudentDTO fromStudent(Student student) {
     if (student == null) {
       return null;
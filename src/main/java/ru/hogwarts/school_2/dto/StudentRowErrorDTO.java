@@ -0,0 +1,23 @@
+package ru.hogwarts.school_2.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Ошибка в строке массовой загрузки студентов")
+public class StudentRowErrorDTO {
+
+  @Schema(description = "Номер строки, начиная с 1", example = "3")
+  private long row;
+
+  @Schema(description = "Имя студента из строки", example = "Гарри Поттер")
+  private String name;
+
+  @Schema(description = "Причина отказа", example = "Студент с таким именем уже существует")
+  private String message;
+
+}//
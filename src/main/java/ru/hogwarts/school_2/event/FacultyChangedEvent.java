@@ -0,0 +1,6 @@
+package ru.hogwarts.school_2.event;
+
+// Факультет добавлен, изменён или удалён. Подписчики перечитывают факультеты после фиксации
+public record FacultyChangedEvent(Long facultyId) {
+
+}//
@@ -0,0 +1,27 @@
+package ru.hogwarts.school_2.event;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school_2.model.Faculty;
+
+// Превращает операции JPA над Faculty в FacultyChangedEvent
+@Component
+public class FacultyEntityListener {
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  public FacultyEntityListener(ApplicationEventPublisher eventPublisher) {
+    this.eventPublisher = eventPublisher;
+  }
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void onChange(Faculty faculty) {
+    eventPublisher.publishEvent(new FacultyChangedEvent(faculty.getId()));
+  }
+
+}//class
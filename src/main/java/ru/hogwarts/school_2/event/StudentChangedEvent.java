@@ -0,0 +1,14 @@
+package ru.hogwarts.school_2.event;
+
+import ru.hogwarts.school_2.dto.StudentDTO;
+
+// Изменение одного студента. before == null — студент добавлен, after == null — удалён.
+// Публикуется внутри транзакции, подписчики слушают его после фиксации
+// (@TransactionalEventListener), поэтому откаченные изменения до них не доходят
+public record StudentChangedEvent(StudentDTO before, StudentDTO after) {
+
+  public Long studentId() {
+    return after != null ? after.getId() : before.getId();
+  }
+
+}//
@@ -0,0 +1,32 @@
+package ru.hogwarts.school_2.event;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.model.Student;
+
+// Превращает добавление и удаление Student в StudentChangedEvent.
+// Изменения публикует StudentUpdateListener: ему нужны прежние значения, их знает только Hibernate.
+// Hibernate создаёт слушатель через Spring, поэтому зависимости внедряются обычным образом
+@Component
+public class StudentEntityListener {
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  public StudentEntityListener(ApplicationEventPublisher eventPublisher) {
+    this.eventPublisher = eventPublisher;
+  }
+
+  @PostPersist
+  public void onPersist(Student student) {
+    eventPublisher.publishEvent(new StudentChangedEvent(null, StudentDTO.fromStudent(student)));
+  }
+
+  @PostRemove
+  public void onRemove(Student student) {
+    eventPublisher.publishEvent(new StudentChangedEvent(StudentDTO.fromStudent(student), null));
+  }
+
+}//class
@@ -0,0 +1,65 @@
+package ru.hogwarts.school_2.event;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.model.Faculty;
+import ru.hogwarts.school_2.model.Student;
+
+// Изменение студента в StudentChangedEvent. Прежние значения берутся из состояния,
+// которое Hibernate и так хранит для проверки изменений (oldState), поэтому чтение
+// студентов ничего не стоит слушателю: копия при загрузке не делается
+@Component
+public class StudentUpdateListener implements PostUpdateEventListener {
+
+  private final EntityManagerFactory entityManagerFactory;
+  private final ApplicationEventPublisher eventPublisher;
+
+  public StudentUpdateListener(EntityManagerFactory entityManagerFactory,
+      ApplicationEventPublisher eventPublisher) {
+    this.entityManagerFactory = entityManagerFactory;
+    this.eventPublisher = eventPublisher;
+  }
+
+  @PostConstruct
+  void register() {
+    entityManagerFactory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+        .getService(EventListenerRegistry.class)
+        .appendListeners(EventType.POST_UPDATE, this);
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    if (!(event.getEntity() instanceof Student student)) {
+      return;
+    }
+    StudentDTO after = StudentDTO.fromStudent(student);
+    StudentDTO before = event.getOldState() != null
+        ? fromState(event.getPersister(), event.getOldState(), student.getId()) : null;
+    eventPublisher.publishEvent(new StudentChangedEvent(before, after));
+  }
+
+  // Событие публикуется в транзакции, подписчики получают его после фиксации
+  @Override
+  public boolean requiresPostCommitHandling(EntityPersister persister) {
+    return false;
+  }
+
+  private static StudentDTO fromState(EntityPersister persister, Object[] state, Long id) {
+    Faculty faculty = (Faculty) state[persister.getPropertyIndex("faculty")];
+    return new StudentDTO(id,
+        (String) state[persister.getPropertyIndex("name")],
+        (Integer) state[persister.getPropertyIndex("age")],
+        (String) state[persister.getPropertyIndex("gender")],
+        faculty != null ? faculty.getId() : null);
+  }
+
+}//class
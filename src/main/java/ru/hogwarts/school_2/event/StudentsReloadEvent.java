@@ -0,0 +1,6 @@
+package ru.hogwarts.school_2.event;
+
+// Студенты изменены в обход JPA (COPY, пакетный SQL): подписчикам нужно перечитать данные из базы
+public record StudentsReloadEvent(String reason) {
+
+}//
@@ -1,12 +1,14 @@
 package ru.hogwarts.school_2.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
-import jakarta.persistence.Lob;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
 import lombok.Getter;
@@ -31,11 +33,16 @@ public class Avatar {
   @Column(nullable = false)
   private String mediaType;
 
-  @Lob
-  private byte[] data;
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "content_hash")// SHA-256 содержимого, несколько аватаров могут делить одну картинку
+  @JsonIgnore
+  private AvatarBlob blob;
 
-  @OneToOne
+  // Байты картинки вынесены в AvatarBlob и загружаются только по запросу
+
+  @OneToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "student_id", nullable = false)// Мы активная сторона, храним внешний ключ
+  @JsonIgnore// Студент ссылается на аватар, без этого сериализация зацикливается
   private Student student;
 
 
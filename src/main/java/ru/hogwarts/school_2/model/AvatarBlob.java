@@ -0,0 +1,49 @@
+package ru.hogwarts.school_2.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import java.sql.Blob;
+import lombok.Getter;
+import lombok.Setter;
+
+// Содержимое картинки, адресуемое по SHA-256: одинаковые картинки хранятся один раз
+// (один файл на диске и одна запись в базе), аватары ссылаются на него по хешу.
+// Записи без ссылок удаляет AvatarBlobCollector
+@Entity
+@Getter
+@Setter
+@Table(name = "avatar_blob")
+public class AvatarBlob {
+
+  @Id
+  @Column(length = 64)
+  private String contentHash;
+
+  @Column(nullable = false)
+  private String filePath;
+
+  @Column(nullable = false)
+  private Long fileSize;
+
+  @Column(nullable = false)
+  private String mediaType;
+
+  @Lob
+  @Column(nullable = false)
+  private Blob data;// Читается потоком только когда действительно нужен
+
+
+  public AvatarBlob() {
+  }
+
+  public AvatarBlob(String contentHash, String filePath, Long fileSize, String mediaType) {
+    this.contentHash = contentHash;
+    this.filePath = filePath;
+    this.fileSize = fileSize;
+    this.mediaType = mediaType;
+  }
+
+}//
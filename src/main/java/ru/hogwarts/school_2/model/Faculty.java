@@ -2,9 +2,11 @@ package ru.hogwarts.school_2.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -17,14 +19,21 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import lombok.Getter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.Setter;
 import lombok.ToString;
+import ru.hogwarts.school_2.config.HibernateCacheConfig;
+import ru.hogwarts.school_2.event.FacultyEntityListener;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.FACULTY_REGION)
 @Getter
 @Setter
 @ToString(exclude = "students")
 @Table(name = "faculty")
+@EntityListeners(FacultyEntityListener.class)
 public class Faculty {
 
   @Id
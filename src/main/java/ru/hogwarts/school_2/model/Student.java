@@ -5,17 +5,29 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.hogwarts.school_2.config.HibernateCacheConfig;
+import ru.hogwarts.school_2.event.StudentEntityListener;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+    region = HibernateCacheConfig.STUDENT_REGION)
 @Getter
 @Setter
 @Table
+@EntityListeners(StudentEntityListener.class)
 //@JsonIgnoreProperties({"faculty"}) // Исключаем поле faculty из сериализации
 public class Student {
 
+  // Последовательность с шагом 50 (оптимизатор pooled-lo): Hibernate берёт сразу диапазон id,
+  // поэтому вставки могут идти JDBC-пакетами. С IDENTITY пакетная вставка невозможна
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+  @SequenceGenerator(name = "student_seq", sequenceName = "student_id_seq", allocationSize = 50)
   @Schema(hidden = true)
   private Long id;
 
@@ -41,6 +53,11 @@ public class Student {
   @OneToOne(mappedBy = "student", cascade = CascadeType.REMOVE, orphanRemoval = true)
   private Avatar avatar;
 
+  // Время последнего изменения, по нему работает /students/changes (индекс student_updated_at_idx)
+  @Column(name = "updated_at", nullable = false)
+  @JsonIgnore
+  private Instant updatedAt;
+
 
   public Student() {
   }
@@ -52,6 +69,13 @@ public class Student {
 
   }
 
+  // Точность микросекунды, как у timestamp в PostgreSQL: курсор синхронизации сравнивает значения точно
+  @PrePersist
+  @PreUpdate
+  void touch() {
+    updatedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
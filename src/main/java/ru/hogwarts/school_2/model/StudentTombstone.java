@@ -0,0 +1,31 @@
+package ru.hogwarts.school_2.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+// Отметка об удалении студента для /students/changes: по ней клиенты синхронизации
+// узнают, что студента больше нет
+@Entity
+@Getter
+@NoArgsConstructor
+@Table(name = "student_tombstone")
+public class StudentTombstone {
+
+  @Id
+  @Column(name = "student_id")
+  private Long studentId;
+
+  @Column(name = "deleted_at", nullable = false)
+  private Instant deletedAt;
+
+  public StudentTombstone(Long studentId, Instant deletedAt) {
+    this.studentId = studentId;
+    this.deletedAt = deletedAt;
+  }
+
+}//class
@@ -0,0 +1,39 @@
+package ru.hogwarts.school_2.repository;
+
+import jakarta.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.hogwarts.school_2.model.AvatarBlob;
+
+public interface AvatarBlobRepository extends JpaRepository<AvatarBlob, String> {
+
+  @Query("SELECT a.blob FROM Avatar a WHERE a.student.id = :studentId")
+  Optional<AvatarBlob> findByStudentId(@Param("studentId") Long studentId);
+
+  // Содержимое, на которое не ссылается ни один аватар
+  @Query("SELECT b FROM AvatarBlob b WHERE NOT EXISTS "
+      + "(SELECT a.id FROM Avatar a WHERE a.blob = b)")
+  List<AvatarBlob> findUnreferenced(Pageable pageable);
+
+  // FOR SHARE: пока аватар привязывается к картинке, сборщик не может её удалить
+  @Lock(LockModeType.PESSIMISTIC_READ)
+  @Query("SELECT b FROM AvatarBlob b WHERE b.contentHash = :contentHash")
+  Optional<AvatarBlob> findSharedById(@Param("contentHash") String contentHash);
+
+  // Большой объект с содержимым не удаляется вместе со строкой, его освобождают отдельно.
+  // lo_unlink транзакционный: при откате удаления объект останется
+  @Query(value = "SELECT lo_unlink(data) FROM avatar_blob WHERE content_hash = :contentHash",
+      nativeQuery = true)
+  Integer unlinkData(@Param("contentHash") String contentHash);
+
+  // FOR UPDATE: сборщик ждёт привязок, начатых до него, и не пускает новые
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT b FROM AvatarBlob b WHERE b.contentHash = :contentHash")
+  Optional<AvatarBlob> findLockedById(@Param("contentHash") String contentHash);
+
+}//
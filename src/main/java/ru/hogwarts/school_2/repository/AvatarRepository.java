@@ -1,8 +1,14 @@
 package ru.hogwarts.school_2.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.hogwarts.school_2.dto.AvatarInfoDTO;
 import ru.hogwarts.school_2.model.Avatar;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
@@ -13,8 +19,22 @@ public interface AvatarRepository extends JpaRepository<Avatar, Long> {
 
   boolean existsByStudentId(Long studentId);
 
+  // Удалить аватары студентов одним запросом. Картинки (AvatarBlob) и файлы остаются,
+  // их без ссылок убирает AvatarBlobCollector
+  @Modifying
+  @Query("DELETE FROM Avatar a WHERE a.student.id IN :studentIds")
+  int deleteAllByStudentIdIn(@Param("studentIds") Collection<Long> studentIds);
+
+  long countByBlob_ContentHash(String contentHash);
+
   @Query(value = "SELECT * FROM avatar ORDER BY id LIMIT 4 OFFSET ?", nativeQuery = true)
-  Iterable<Avatar> findAllByPage04(int pageNumber);
+  Iterable<Avatar> findAllByPage04(int offset);
+
+  // Постраничный просмотр по курсору: ищем по индексу первичного ключа сразу
+  // за последним id предыдущей страницы, поэтому глубина страницы не важна
+  @Query("SELECT new ru.hogwarts.school_2.dto.AvatarInfoDTO(a.id, a.student.id, a.fileSize, a.mediaType) "
+      + "FROM Avatar a WHERE a.id > :cursor ORDER BY a.id")
+  List<AvatarInfoDTO> findInfoAfter(@Param("cursor") long cursor, Pageable pageable);
 
 
 }//
@@ -3,15 +3,28 @@ package ru.hogwarts.school_2.repository;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.hogwarts.school_2.model.Faculty;
 
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
 
+  // Поиск по названию и цвету обслуживает FacultyRegistry из памяти. В базу идёт только
+  // проверка промаха (findByNameIgnoreCase), поэтому кэш запросов здесь не нужен:
+  // он не знает о записях с других экземпляров и вернул бы тот же промах
   List<Faculty> findByNameIgnoreCaseOrColorIgnoreCase
       (String name, String color);
   Optional<Faculty> findByNameIgnoreCase(String name);
   Optional<Faculty> findById(Long id);
   Optional<Faculty> findByColorIgnoreCase(String color);
 
+  // Сводка по всем факультетам одним GROUP BY:
+  // [id, name, color, количество студентов, средний возраст, юношей, девушек].
+  // Пол хранится в обоих регистрах, поэтому сравнивается upper(gender)
+  @Query("SELECT f.id, f.name, f.color, COUNT(s), AVG(s.age), "
+      + "SUM(CASE WHEN UPPER(s.gender) = 'М' THEN 1 ELSE 0 END), "
+      + "SUM(CASE WHEN UPPER(s.gender) = 'Ж' THEN 1 ELSE 0 END) "
+      + "FROM Faculty f LEFT JOIN f.students s GROUP BY f.id, f.name, f.color ORDER BY f.id")
+  List<Object[]> findOverviewRows();
+
 
 }//class
\ No newline at end of file
@@ -1,15 +1,27 @@
 package ru.hogwarts.school_2.repository;
 
 import io.micrometer.common.lang.Nullable;
+import jakarta.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import ru.hogwarts.school_2.dto.StudentChangeDTO;
+import ru.hogwarts.school_2.dto.StudentDTO;
 import ru.hogwarts.school_2.model.Student;
 
-public interface StudentRepository extends JpaRepository<Student, Long> {
+public interface StudentRepository extends JpaRepository<Student, Long>,
+    JpaSpecificationExecutor<Student>, StudentSearchRepository {
 
   // Для уникальных запросов (возвращает Optional)
   Optional<Student> findById(Long id);
@@ -19,30 +31,83 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
   long countByFaculty_Id(Long facultyId);
 
   // Для не уникальных запросов (возвращает List)
-  List<Student> findByNameIgnoreCase(String name);
+  // Проверка имени при добавлении студента — результат берётся из кэша запросов.
+  // Сравнение через lower(name), как в остальных запросах по имени: индекс student_lower_name_idx
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  @Query("SELECT s FROM Student s WHERE LOWER(s.name) = LOWER(:name)")
+  List<Student> findByNameIgnoreCase(@Param("name") String name);
 
   List<Student> findByAge(int age);
 
   List<Student> findByAgeBetween(int min, int max);
 
-  List<Student> findByNameContainingIgnoreCase(String name);
-
   List<Student> findByGenderIgnoreCase(String gender);
 
   List<Student> findAllByFaculty_Id(Long facultyId);
 
+  // Проверка имён одним запросом для массовой загрузки (имена передаются в нижнем регистре)
+  @Query("SELECT s FROM Student s WHERE LOWER(s.name) IN :names")
+  List<Student> findAllByLowerNameIn(@Param("names") Collection<String> names);
+
+  // Проекции сразу в DTO: без сущностей в контексте и без отдельной загрузки факультетов
+  @Query(value = "SELECT new ru.hogwarts.school_2.dto.StudentDTO(s.id, s.name, s.age, s.gender, f.id) "
+      + "FROM Student s LEFT JOIN s.faculty f",
+      countQuery = "SELECT COUNT(s) FROM Student s")
+  Page<StudentDTO> findAllDto(Pageable pageable);
+
+  // Несколько студентов по списку id одним запросом
+  @Query("SELECT new ru.hogwarts.school_2.dto.StudentDTO(s.id, s.name, s.age, s.gender, f.id) "
+      + "FROM Student s LEFT JOIN s.faculty f WHERE s.id IN :ids")
+  List<StudentDTO> findAllDtoByIdIn(@Param("ids") Collection<Long> ids);
+
+  // Изменения после курсора (updatedAt, id) и не позже upTo, по порядку курсора.
+  // Проекция, как у findAllDto: сущности с аватарами не загружаются
+  @Query("SELECT new ru.hogwarts.school_2.dto.StudentChangeDTO(s.id, s.name, s.age, s.gender, "
+      + "f.id, s.updatedAt) FROM Student s LEFT JOIN s.faculty f WHERE s.updatedAt <= :upTo "
+      + "AND (s.updatedAt > :since OR (s.updatedAt = :since AND s.id > :afterId)) "
+      + "ORDER BY s.updatedAt, s.id")
+  List<StudentChangeDTO> findChangedAfter(@Param("since") Instant since, @Param("afterId") long afterId,
+      @Param("upTo") Instant upTo, Pageable pageable);
+
+  // Потоковое чтение всей таблицы: драйвер получает строки порциями по fetch size
+  // (в PostgreSQL курсор работает только внутри транзакции)
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query("SELECT new ru.hogwarts.school_2.dto.StudentDTO(s.id, s.name, s.age, s.gender, f.id) "
+      + "FROM Student s LEFT JOIN s.faculty f ORDER BY s.id")
+  Stream<StudentDTO> streamAllDto();
+
   //SQL запросы
 
+  // Количество и сумма возрастов по факультетам одним запросом: [facultyId, count, ageSum],
+  // студенты без факультета попадают в группу с facultyId = null
+  @Query("SELECT f.id, COUNT(s), SUM(s.age) FROM Student s LEFT JOIN s.faculty f GROUP BY f.id")
+  List<Object[]> sumAgesByFaculty();
+
+  // Одна и та же страница списка студентов каждого факультета одним запросом:
+  // для каждого факультета отдельный OFFSET/LIMIT по индексу student_faculty_id_idx
+  // (faculty_id, id), читается только сама страница, а не все студенты.
+  // [id, name, age, gender, faculty_id], по факультету и id
+  @Query(value = "SELECT r.id, r.name, r.age, r.gender, r.faculty_id FROM faculty f "
+      + "CROSS JOIN LATERAL (SELECT s.id, s.name, s.age, s.gender, s.faculty_id "
+      + "FROM student s WHERE s.faculty_id = f.id ORDER BY s.id "
+      + "OFFSET :offset LIMIT :size) r ORDER BY f.id, r.id",
+      nativeQuery = true)
+  List<Object[]> findRosterPageOfEachFaculty(@Param("offset") long offset, @Param("size") int size);
+
   // Средний возраст студентов
   @Query(value = "SELECT AVG(age) AS average_age FROM Student" , nativeQuery = true)
   @Nullable //Теперь служба автоматически обработает случай, когда среднее значение отсутствует (NULL)
   Double findAverageAge();
 
-  //Удалить всех студентов факультета
+  // Очередная порция студентов факультета для удаления, по возрастанию id
+  @Query("SELECT new ru.hogwarts.school_2.dto.StudentDTO(s.id, s.name, s.age, s.gender, s.faculty.id) "
+      + "FROM Student s WHERE s.faculty.id = :facultyId ORDER BY s.id")
+  List<StudentDTO> findDtoByFacultyId(@Param("facultyId") Long facultyId, Pageable pageable);
+
+  // Удалить студентов по списку id одним запросом
   @Modifying//это про то что мы вносим изменения в базу
-  @Query(value = "DELETE FROM Student s WHERE s.faculty.id = :facultyId")
-  void deleteAllByFaculty_Id(
-      @Param("facultyId") Long facultyId); // Здесь ставим void тк после удаления возвращать нечего
+  @Query(value = "DELETE FROM Student s WHERE s.id IN :ids")
+  int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
 
   // Получить количество всех студентов школы
   @Query(value = "SELECT COUNT(*) FROM Student", nativeQuery = true)
@@ -0,0 +1,16 @@
+package ru.hogwarts.school_2.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.model.Student;
+
+// Поиск по Specification сразу в DTO. findAll(spec, pageable) из JpaSpecificationExecutor
+// загружает сущности, а у каждой из них отдельным запросом подтягивается аватар
+// (обратная сторона @OneToOne не бывает ленивой)
+public interface StudentSearchRepository {
+
+  Page<StudentDTO> searchDto(Specification<Student> specification, Pageable pageable);
+
+}//
@@ -0,0 +1,62 @@
+package ru.hogwarts.school_2.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.util.List;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.model.Student;
+
+// Та же проекция, что в findAllDto: faculty.id берётся из колонки faculty_id без соединения.
+// Запрос количества выполняется, только если по странице нельзя понять общее число
+public class StudentSearchRepositoryImpl implements StudentSearchRepository {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public Page<StudentDTO> searchDto(Specification<Student> specification, Pageable pageable) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<StudentDTO> query = cb.createQuery(StudentDTO.class);
+    Root<Student> root = query.from(Student.class);
+    query.select(cb.construct(StudentDTO.class, root.get("id"), root.get("name"),
+        root.get("age"), root.get("gender"), root.get("faculty").get("id")));
+    Predicate predicate = specification.toPredicate(root, query, cb);
+    if (predicate != null) {
+      query.where(predicate);
+    }
+    if (pageable.getSort().isSorted()) {
+      query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+    }
+
+    TypedQuery<StudentDTO> typedQuery = entityManager.createQuery(query);
+    if (pageable.isPaged()) {
+      typedQuery.setFirstResult(Math.toIntExact(pageable.getOffset()));
+      typedQuery.setMaxResults(pageable.getPageSize());
+    }
+    List<StudentDTO> content = typedQuery.getResultList();
+    return PageableExecutionUtils.getPage(content, pageable, () -> count(specification));
+  }
+
+  private long count(Specification<Student> specification) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> query = cb.createQuery(Long.class);
+    Root<Student> root = query.from(Student.class);
+    query.select(cb.count(root));
+    Predicate predicate = specification.toPredicate(root, query, cb);
+    if (predicate != null) {
+      query.where(predicate);
+    }
+    return entityManager.createQuery(query).getSingleResult();
+  }
+
+}//class
@@ -0,0 +1,49 @@
+package ru.hogwarts.school_2.repository;
+
+import java.util.Locale;
+import org.springframework.data.jpa.domain.Specification;
+import ru.hogwarts.school_2.model.Student;
+
+// Условия поиска студентов для JpaSpecificationExecutor. Каждый метод возвращает null,
+// если параметр не задан: Specification.where/and такие условия пропускают.
+// Пол сравнивается через upper(): в базе встречаются оба регистра,
+// индексы student_3 построены по upper(gender)
+public final class StudentSpecifications {
+
+  private StudentSpecifications() {
+  }
+
+  public static Specification<Student> nameContains(String name) {
+    if (name == null || name.isBlank()) {
+      return null;
+    }
+    String pattern = "%" + name.trim().toLowerCase(Locale.ROOT)
+        .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    return (root, query, cb) -> cb.like(cb.lower(root.get("name")), pattern, '\\');
+  }
+
+  public static Specification<Student> hasGender(String gender) {
+    if (gender == null || gender.isBlank()) {
+      return null;
+    }
+    String value = gender.trim().toUpperCase(Locale.ROOT);
+    return (root, query, cb) -> cb.equal(cb.upper(root.get("gender")), value);
+  }
+
+  public static Specification<Student> ageFrom(Integer minAge) {
+    return minAge == null ? null
+        : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("age"), minAge);
+  }
+
+  public static Specification<Student> ageTo(Integer maxAge) {
+    return maxAge == null ? null
+        : (root, query, cb) -> cb.lessThanOrEqualTo(root.get("age"), maxAge);
+  }
+
+  // По колонке faculty_id, без соединения с таблицей faculty
+  public static Specification<Student> inFaculty(Long facultyId) {
+    return facultyId == null ? null
+        : (root, query, cb) -> cb.equal(root.get("faculty").get("id"), facultyId);
+  }
+
+}//class
@@ -0,0 +1,19 @@
+package ru.hogwarts.school_2.repository;
+
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.hogwarts.school_2.model.StudentTombstone;
+
+public interface StudentTombstoneRepository extends JpaRepository<StudentTombstone, Long> {
+
+  // Удаления после курсора (deletedAt, studentId) и не позже upTo, по порядку курсора
+  @Query("SELECT t FROM StudentTombstone t WHERE t.deletedAt <= :upTo AND (t.deletedAt > :since "
+      + "OR (t.deletedAt = :since AND t.studentId > :afterId)) ORDER BY t.deletedAt, t.studentId")
+  List<StudentTombstone> findChangedAfter(@Param("since") Instant since,
+      @Param("afterId") long afterId, @Param("upTo") Instant upTo, Pageable pageable);
+
+}//
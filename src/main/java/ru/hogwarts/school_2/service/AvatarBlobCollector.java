@@ -0,0 +1,91 @@
+package ru.hogwarts.school_2.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hogwarts.school_2.model.AvatarBlob;
+import ru.hogwarts.school_2.repository.AvatarBlobRepository;
+import ru.hogwarts.school_2.repository.AvatarRepository;
+
+// Сборщик мусора для хранилища картинок: удаляет записи AvatarBlob, на которые
+// не ссылается ни один аватар, их большие объекты в базе и файлы на диске вместе
+// с уменьшенными копиями.
+// Число ссылок считается по строкам avatar, отдельного счётчика не ведём.
+// Перед удалением запись блокируется (FOR UPDATE) и ссылки проверяются ещё раз:
+// привязка аватара читает картинку с FOR SHARE, поэтому не может пройти между проверкой и удалением
+@Component
+public class AvatarBlobCollector {
+
+  private static final Logger logger = LoggerFactory.getLogger(AvatarBlobCollector.class);
+
+  private final AvatarBlobRepository avatarBlobRepository;
+  private final AvatarRepository avatarRepository;
+  private final AvatarVariantGenerator avatarVariantGenerator;
+
+  @Value("${avatars.gc.batch-size:100}")
+  private int batchSize;
+
+  public AvatarBlobCollector(AvatarBlobRepository avatarBlobRepository,
+      AvatarRepository avatarRepository, AvatarVariantGenerator avatarVariantGenerator) {
+    this.avatarBlobRepository = avatarBlobRepository;
+    this.avatarRepository = avatarRepository;
+    this.avatarVariantGenerator = avatarVariantGenerator;
+  }
+
+  @Scheduled(fixedDelayString = "${avatars.gc.interval-ms:3600000}",
+      initialDelayString = "${avatars.gc.interval-ms:3600000}")
+  @Transactional
+  public void collect() {
+    List<AvatarBlob> unreferenced = avatarBlobRepository.findUnreferenced(
+        PageRequest.of(0, batchSize));
+    if (unreferenced.isEmpty()) {
+      return;
+    }
+
+    logger.info("Collecting {} unreferenced avatar blobs", unreferenced.size());
+    List<Path> files = new ArrayList<>();
+    for (AvatarBlob candidate : unreferenced) {
+      String contentHash = candidate.getContentHash();
+      AvatarBlob blob = avatarBlobRepository.findLockedById(contentHash).orElse(null);
+      if (blob == null || avatarRepository.countByBlob_ContentHash(contentHash) > 0) {
+        logger.debug("Avatar blob {} was linked again, skipping", contentHash);
+        continue;
+      }
+      Path original = Path.of(blob.getFilePath());
+      files.add(original);
+      files.addAll(avatarVariantGenerator.variantPaths(original, contentHash,
+          blob.getMediaType()));
+      avatarBlobRepository.unlinkData(contentHash);
+      avatarBlobRepository.delete(blob);
+    }
+
+    // Файлы удаляем только после фиксации транзакции: если удаление записей откатится,
+    // файлы останутся на месте. Загрузка той же картинки заново пишет свой файл, его это не касается
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        files.forEach(AvatarBlobCollector.this::deleteFile);
+      }
+    });
+  }
+
+  private void deleteFile(Path file) {
+    try {
+      Files.deleteIfExists(file);
+      logger.debug("Deleted avatar file: {}", file);
+    } catch (IOException e) {
+      logger.warn("Could not delete avatar file: {}", file, e);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package ru.hogwarts.school_2.service;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import ru.hogwarts.school_2.model.AvatarBlob;
+import ru.hogwarts.school_2.repository.AvatarBlobRepository;
+
+// Копия картинки из базы, которая читается потоком прямо в ответ, без буфера на всю картинку.
+// Большой объект PostgreSQL читается только внутри транзакции, а ответ пишется уже после
+// выхода из сервиса, поэтому getInputStream открывает свою транзакцию (только чтение)
+// и завершает её при закрытии потока
+public class AvatarBlobResource extends AbstractResource {
+
+  private final PlatformTransactionManager transactionManager;
+  private final AvatarBlobRepository avatarBlobRepository;
+  private final String contentHash;
+  private final long contentLength;
+
+  public AvatarBlobResource(PlatformTransactionManager transactionManager,
+      AvatarBlobRepository avatarBlobRepository, String contentHash, long contentLength) {
+    this.transactionManager = transactionManager;
+    this.avatarBlobRepository = avatarBlobRepository;
+    this.contentHash = contentHash;
+    this.contentLength = contentLength;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    DefaultTransactionDefinition definition =
+        new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    definition.setReadOnly(true);
+    TransactionStatus status = transactionManager.getTransaction(definition);
+    try {
+      AvatarBlob blob = avatarBlobRepository.findById(contentHash)
+          .orElseThrow(() -> new FileNotFoundException(getDescription() + " не найдена"));
+      return new FilterInputStream(blob.getData().getBinaryStream()) {
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+          if (closed) {
+            return;
+          }
+          closed = true;
+          try {
+            super.close();
+          } finally {
+            transactionManager.commit(status);
+          }
+        }
+      };
+    } catch (IOException | SQLException | RuntimeException e) {
+      transactionManager.rollback(status);
+      throw e instanceof IOException io ? io
+          : new IOException("Ошибка при чтении аватара из базы данных", e);
+    }
+  }
+
+  // Размер известен заранее: по умолчанию AbstractResource прочитал бы для него весь поток
+  @Override
+  public long contentLength() {
+    return contentLength;
+  }
+
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  @Override
+  public String getDescription() {
+    return "картинка аватара " + contentHash;
+  }
+}
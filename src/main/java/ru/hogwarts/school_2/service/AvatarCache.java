@@ -0,0 +1,128 @@
+package ru.hogwarts.school_2.service;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school_2.dto.AvatarCacheStatsDTO;
+
+// Кэш картинок аватаров с ограничением по байтам. Содержимое лежит в direct-буферах
+// вне кучи, поэтому не увеличивает паузы сборщика мусора. Вытеснение LRU.
+// Ключ — ID студента и размер копии (0 для оригинала с диска, DB_ORIGINAL — для копии
+// из базы: у неё нет даты изменения файла, поэтому записи не смешиваем)
+@Component
+public class AvatarCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(AvatarCache.class);
+
+  public static final int DB_ORIGINAL = -1;
+
+  // Число полос счётчиков сброса: память не растёт с числом студентов
+  private static final int GENERATION_STRIPES = 64;
+
+  public record Key(long studentId, int size) {
+
+  }
+
+  public record Entry(ByteBuffer data, String mediaType, long lastModified, String eTag) {
+
+  }
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+
+  // accessOrder = true: при каждом чтении запись переносится в конец, вытесняем с начала
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long currentBytes;
+
+  // Счётчики сброса по полосам ID студента. Читатель запоминает значение до чтения
+  // из базы или с диска, и put не кладёт запись, если за это время был сброс:
+  // иначе прочитанная до загрузки старая картинка вернулась бы в кэш после invalidate
+  private final long[] generations = new long[GENERATION_STRIPES];
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public AvatarCache(@Value("${avatars.cache.max-bytes:33554432}") long maxBytes,
+      @Value("${avatars.cache.max-entry-bytes:2097152}") long maxEntryBytes) {
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+  }
+
+  public boolean isCacheable(long size) {
+    return size > 0 && size <= maxEntryBytes;
+  }
+
+  public synchronized Entry get(Key key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry;
+  }
+
+  // Значение счётчика сброса, которое нужно передать в put после чтения
+  public synchronized long generation(long studentId) {
+    return generations[stripe(studentId)];
+  }
+
+  public synchronized void put(Key key, Entry entry, long generation) {
+    long size = entry.data().capacity();
+    if (!isCacheable(size)) {
+      return;
+    }
+    if (generations[stripe(key.studentId())] != generation) {
+      logger.debug("Avatar of student ID {} was invalidated while reading, not caching",
+          key.studentId());
+      return;
+    }
+
+    Entry previous = entries.put(key, entry);
+    if (previous != null) {
+      currentBytes -= previous.data().capacity();
+    }
+    currentBytes += size;
+
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (currentBytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<Key, Entry> eldest = iterator.next();
+      currentBytes -= eldest.getValue().data().capacity();
+      iterator.remove();
+      evictions.incrementAndGet();
+    }
+  }
+
+  // Сбросить все размеры аватара студента (новая загрузка или удаление студента)
+  public synchronized void invalidate(long studentId) {
+    generations[stripe(studentId)]++;
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, Entry> entry = iterator.next();
+      if (entry.getKey().studentId() == studentId) {
+        currentBytes -= entry.getValue().data().capacity();
+        iterator.remove();
+      }
+    }
+    logger.debug("Avatar cache invalidated for student ID: {}", studentId);
+  }
+
+  private static int stripe(long studentId) {
+    return (int) Math.floorMod(studentId, (long) GENERATION_STRIPES);
+  }
+
+  public synchronized AvatarCacheStatsDTO getStats() {
+    long hitCount = hits.get();
+    long missCount = misses.get();
+    long requests = hitCount + missCount;
+    return new AvatarCacheStatsDTO(hitCount, missCount, evictions.get(), entries.size(),
+        currentBytes, maxBytes, requests == 0 ? 0.0 : (double) hitCount / requests);
+  }
+}
@@ -0,0 +1,55 @@
+package ru.hogwarts.school_2.service;
+
+// Определение настоящего типа картинки по первым байтам файла (сигнатуре),
+// а не по имени файла или заголовку Content-Type от клиента
+final class AvatarMediaTypes {
+
+  // Сколько первых байт файла нужно для распознавания всех известных сигнатур
+  static final int SIGNATURE_LENGTH = 12;
+
+  private AvatarMediaTypes() {
+  }
+
+  static String detect(byte[] head, int length) {
+    if (startsWith(head, length, 0xFF, 0xD8, 0xFF)) {
+      return "image/jpeg";
+    }
+    if (startsWith(head, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+      return "image/png";
+    }
+    if (startsWith(head, length, 'G', 'I', 'F', '8')) {
+      return "image/gif";
+    }
+    if (startsWith(head, length, 'R', 'I', 'F', 'F') && length >= 12
+        && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+      return "image/webp";
+    }
+    if (startsWith(head, length, 'B', 'M')) {
+      return "image/bmp";
+    }
+    return null;
+  }
+
+  static String extension(String mediaType) {
+    return switch (mediaType) {
+      case "image/jpeg" -> "jpg";
+      case "image/png" -> "png";
+      case "image/gif" -> "gif";
+      case "image/webp" -> "webp";
+      case "image/bmp" -> "bmp";
+      default -> null;
+    };
+  }
+
+  private static boolean startsWith(byte[] head, int length, int... signature) {
+    if (length < signature.length) {
+      return false;
+    }
+    for (int i = 0; i < signature.length; i++) {
+      if ((head[i] & 0xFF) != signature[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -1,45 +1,126 @@
 package ru.hogwarts.school_2.service;
 
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.largeobject.LargeObject;
+import org.postgresql.largeobject.LargeObjectManager;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school_2.dto.AvatarCacheStatsDTO;
+import ru.hogwarts.school_2.dto.AvatarFile;
+import ru.hogwarts.school_2.dto.AvatarInfoDTO;
+import ru.hogwarts.school_2.dto.AvatarPageDTO;
 import ru.hogwarts.school_2.exception.AvatarProcessingException;
 import ru.hogwarts.school_2.exception.StudentNotFoundException;
 import ru.hogwarts.school_2.model.Avatar;
+import ru.hogwarts.school_2.model.AvatarBlob;
 import ru.hogwarts.school_2.model.Student;
+import ru.hogwarts.school_2.repository.AvatarBlobRepository;
 import ru.hogwarts.school_2.repository.AvatarRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 @Service
 public class AvatarService {
 
   private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
+  private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+
+  private static final String INSERT_BLOB =
+      "INSERT INTO avatar_blob (content_hash, file_path, file_size, media_type, data) "
+          + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (content_hash) DO NOTHING";
+
   @Value("${avatars.storage.path}")
   private String avatarsStoragePath;
 
   private final StudentService studentService;
   private final AvatarRepository avatarRepository;
+  private final AvatarBlobRepository avatarBlobRepository;
+  private final AvatarVariantGenerator avatarVariantGenerator;
+  private final AvatarCache avatarCache;
+  private final PlatformTransactionManager transactionManager;
 
-  public AvatarService(StudentService studentService, AvatarRepository avatarRepository) {
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  public AvatarService(StudentService studentService, AvatarRepository avatarRepository,
+      AvatarBlobRepository avatarBlobRepository, AvatarVariantGenerator avatarVariantGenerator,
+      AvatarCache avatarCache, PlatformTransactionManager transactionManager) {
     this.studentService = studentService;
     this.avatarRepository = avatarRepository;
+    this.avatarBlobRepository = avatarBlobRepository;
+    this.avatarVariantGenerator = avatarVariantGenerator;
+    this.avatarCache = avatarCache;
+    this.transactionManager = transactionManager;
   }
 
   @Transactional
   public void uploadAvatar(Long studentId, MultipartFile file) throws IOException {
     logger.info("Was invoked method for upload avatar for student ID: {}", studentId);
 
+    Student student = getStudent(studentId);
+
+    if (file.isEmpty()) {
+      logger.error("Uploaded file is empty for student ID: {}", studentId);
+      throw new AvatarProcessingException("Файл аватара не может быть пустым");
+    }
+
+    AvatarBlob blob = storeBlob(studentId, file);
+    attachBlob(student, blob);
+  }
+
+  // Привязать студенту уже сохранённую картинку по её SHA-256 без повторной загрузки байтов.
+  // false означает, что такой картинки на сервере нет и её нужно загрузить
+  @Transactional
+  public boolean linkAvatar(Long studentId, String contentHash) {
+    logger.info("Was invoked method for link avatar with hash {} to student ID: {}",
+        contentHash, studentId);
+
+    Student student = getStudent(studentId);
+
+    Optional<AvatarBlob> blob = avatarBlobRepository.findSharedById(contentHash.toLowerCase());
+    if (blob.isEmpty()) {
+      logger.debug("Avatar content with hash {} is not stored yet", contentHash);
+      return false;
+    }
+
+    attachBlob(student, blob.get());
+    return true;
+  }
+
+  private Student getStudent(Long studentId) {
     logger.debug("Checking if student with ID {} exists", studentId);
     Optional<Student> studentOpt = studentService.getStudentById(studentId);
     if (studentOpt.isEmpty()) {
@@ -49,54 +130,195 @@ public class AvatarService {
 
     Student student = studentOpt.get();
     logger.debug("Student found: ID={}, name={}", student.getId(), student.getName());
+    return student;
+  }
 
-    if (file.isEmpty()) {
-      logger.error("Uploaded file is empty for student ID: {}", studentId);
-      throw new AvatarProcessingException("Файл аватара не может быть пустым");
-    }
-
-    String extension = getExtension(file.getOriginalFilename());
-    Path filePath = Path.of(avatarsStoragePath, studentId + "." + extension);
-    logger.debug("Preparing to save avatar to: {}", filePath);
+  private AvatarBlob storeBlob(Long studentId, MultipartFile file) throws IOException {
+    Path storageDir = Path.of(avatarsStoragePath);
+    Files.createDirectories(storageDir);
 
-    Files.createDirectories(filePath.getParent());
-    Files.deleteIfExists(filePath);
+    // Один проход по загружаемому потоку: пишем файл, считаем размер и SHA-256,
+    // запоминаем первые байты для определения типа картинки. Копия в базу (insertBlob)
+    // читает уже этот файл и только для новой картинки
+    Path tempFile = Files.createTempFile(storageDir, "upload-", ".tmp");
+    MessageDigest digest = newDigest();
+    byte[] head = new byte[AvatarMediaTypes.SIGNATURE_LENGTH];
+    int headLength = 0;
+    long fileSize = 0;
 
     try (InputStream is = file.getInputStream();
-        OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-        BufferedInputStream bis = new BufferedInputStream(is, 1024);
-        BufferedOutputStream bos = new BufferedOutputStream(os, 1024)) {
-      logger.debug("Saving avatar file to disk");
-      bis.transferTo(bos);
+        OutputStream os = Files.newOutputStream(tempFile)) {
+      logger.debug("Streaming avatar upload to temporary file: {}", tempFile);
+      byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        if (headLength < head.length) {
+          int count = Math.min(read, head.length - headLength);
+          System.arraycopy(buffer, 0, head, headLength, count);
+          headLength += count;
+        }
+        digest.update(buffer, 0, read);
+        os.write(buffer, 0, read);
+        fileSize += read;
+      }
     } catch (IOException e) {
+      Files.deleteIfExists(tempFile);
       logger.error("Error saving avatar file to disk for student ID: {}", studentId, e);
       throw new AvatarProcessingException("Ошибка при сохранении файла на диск", e);
     }
 
-    Avatar avatar = avatarRepository.findByStudentId(studentId).orElse(new Avatar());
-    logger.debug("{} avatar for student ID: {}",
-        avatar.getId() == null ? "Creating new" : "Updating existing", studentId);
+    String contentHash = HexFormat.of().formatHex(digest.digest());
 
-    avatar.setStudent(student);
-    avatar.setFilePath(filePath.toString());
-    avatar.setFileSize(file.getSize());
-    avatar.setMediaType(file.getContentType());
+    // Такая картинка уже есть: ни файл, ни копию в базе повторно не пишем
+    Optional<AvatarBlob> existing = avatarBlobRepository.findSharedById(contentHash);
+    if (existing.isPresent()) {
+      Files.deleteIfExists(tempFile);
+      logger.debug("Avatar content with hash {} is already stored", contentHash);
+      return existing.get();
+    }
+
+    String mediaType = AvatarMediaTypes.detect(head, headLength);
+    String extension;
+    if (mediaType != null) {
+      extension = AvatarMediaTypes.extension(mediaType);
+    } else {
+      logger.warn("Unknown image signature for student ID: {}, using declared type: {}",
+          studentId, file.getContentType());
+      mediaType = file.getContentType() != null
+          ? file.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+      extension = getExtension(file.getOriginalFilename());
+    }
+
+    // У каждой записи свой файл: если сборщик ещё удаляет прежнюю запись с тем же хешем,
+    // её файл и файл новой записи не совпадут
+    Path filePath = storageDir.resolve(
+        contentHash + "-" + UUID.randomUUID().toString().substring(0, 8) + "." + extension);
+    boolean inserted;
+    try {
+      inserted = insertBlob(contentHash, filePath, fileSize, mediaType, tempFile);
+    } catch (RuntimeException e) {
+      Files.deleteIfExists(tempFile);
+      throw e;
+    }
+    if (!inserted) {
+      // Ту же картинку одновременно сохранила другая загрузка, берём её запись
+      Files.deleteIfExists(tempFile);
+      logger.debug("Avatar content with hash {} was stored concurrently", contentHash);
+      return avatarBlobRepository.findSharedById(contentHash)
+          .orElseThrow(() -> new AvatarProcessingException("Ошибка при сохранении аватара"));
+    }
+
+    logger.debug("Moving avatar to: {}, size={}, type={}", filePath, fileSize, mediaType);
+    try {
+      Files.move(tempFile, filePath, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      Files.deleteIfExists(tempFile);
+      logger.error("Error moving avatar file for student ID: {}", studentId, e);
+      throw new AvatarProcessingException("Ошибка при сохранении файла на диск", e);
+    }
+
+    // Если транзакция откатится, записи не будет и файл никто не найдёт: удаляем его сразу.
+    // Уменьшенные копии создаются в фоне, когда картинка уже зафиксирована в базе
+    String storedMediaType = mediaType;
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        if (status == STATUS_COMMITTED) {
+          avatarVariantGenerator.submit(filePath, contentHash, storedMediaType);
+        } else {
+          deleteQuietly(filePath);
+        }
+      }
+    });
+    return avatarBlobRepository.findSharedById(contentHash)
+        .orElseThrow(() -> new AvatarProcessingException("Ошибка при сохранении аватара"));
+  }
+
+  // Копия содержимого пишется в большой объект PostgreSQL, запись вставляется с
+  // ON CONFLICT DO NOTHING. false — запись с таким хешем уже есть (её вставила параллельная
+  // загрузка), тогда записанный большой объект удаляется.
+  // Это второе чтение файла, уже с локального диска. Писать в базу одновременно с приёмом
+  // загрузки нельзя: хеш известен только в конце, и каждая повторная картинка целиком
+  // попадала бы в базу, а транзакция держала бы соединение, пока клиент передаёт файл
+  private boolean insertBlob(String contentHash, Path filePath, long fileSize, String mediaType,
+      Path source) {
+    return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+      if (!connection.isWrapperFor(PGConnection.class)) {
+        throw new IllegalStateException("Хранилище аватаров поддерживается только для PostgreSQL");
+      }
+      LargeObjectManager largeObjects = connection.unwrap(PGConnection.class).getLargeObjectAPI();
+      long oid = largeObjects.createLO(LargeObjectManager.READWRITE);
+
+      logger.debug("Streaming avatar file into DB");
+      LargeObject largeObject = largeObjects.open(oid, LargeObjectManager.WRITE);
+      try (OutputStream os = largeObject.getOutputStream()) {
+        Files.copy(source, os);
+      } catch (IOException e) {
+        logger.error("Error reading avatar file {}", source, e);
+        throw new AvatarProcessingException("Ошибка при чтении файла", e);
+      }
+
+      try (PreparedStatement statement = connection.prepareStatement(INSERT_BLOB)) {
+        statement.setString(1, contentHash);
+        statement.setString(2, filePath.toString());
+        statement.setLong(3, fileSize);
+        statement.setString(4, mediaType);
+        statement.setLong(5, oid);
+        if (statement.executeUpdate() == 1) {
+          return true;
+        }
+      }
+      largeObjects.delete(oid);
+      return false;
+    });
+  }
 
+  private void deleteQuietly(Path file) {
     try {
-      logger.debug("Reading avatar file bytes");
-      avatar.setData(file.getBytes());
+      Files.deleteIfExists(file);
     } catch (IOException e) {
-      logger.error("Error reading avatar file bytes for student ID: {}", studentId, e);
-      throw new AvatarProcessingException("Ошибка при чтении файла", e);
+      logger.warn("Could not delete avatar file: {}", file, e);
     }
+  }
+
+  private void attachBlob(Student student, AvatarBlob blob) {
+    Avatar avatar = avatarRepository.findByStudentId(student.getId()).orElse(new Avatar());
+    logger.debug("{} avatar for student ID: {}",
+        avatar.getId() == null ? "Creating new" : "Updating existing", student.getId());
+
+    // Прежняя картинка, если на неё больше никто не ссылается, будет удалена сборщиком
+    avatar.setStudent(student);
+    avatar.setBlob(blob);
+    avatar.setFilePath(blob.getFilePath());
+    avatar.setFileSize(blob.getFileSize());
+    avatar.setMediaType(blob.getMediaType());
 
     Avatar savedAvatar = avatarRepository.save(avatar);
     logger.info("Avatar saved successfully for student ID: {}. Avatar ID: {}",
-        studentId, savedAvatar.getId());
+        student.getId(), savedAvatar.getId());
+
+    Long studentId = student.getId();
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        avatarCache.invalidate(studentId);
+      }
+    });
+  }
+
+  private MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 недоступен", e);
+    }
   }
 
   private String getExtension(String fileName) {
     logger.debug("Getting file extension for: {}", fileName);
+    if (fileName == null || fileName.lastIndexOf(".") < 0) {
+      return "bin";
+    }
     return fileName.substring(fileName.lastIndexOf(".") + 1);
   }
 
@@ -110,29 +332,168 @@ public class AvatarService {
         });
   }
 
-  public byte[] getAvatarFileData(Long studentId) {
-    logger.info("Was invoked method for get avatar file data by student ID: {}", studentId);
+  @Transactional(readOnly = true)
+  public AvatarFile getAvatarFromDb(Long studentId) {
+    logger.info("Was invoked method for get avatar data from DB by student ID: {}", studentId);
+
+    AvatarCache.Key key = new AvatarCache.Key(studentId, AvatarCache.DB_ORIGINAL);
+    AvatarCache.Entry cached = avatarCache.get(key);
+    if (cached != null) {
+      return toAvatarFile(cached, studentId);
+    }
+    // Запоминаем до чтения: если аватар заменят, пока читаем, старое в кэш не попадёт
+    long generation = avatarCache.generation(studentId);
+
+    AvatarBlob blob = avatarBlobRepository.findByStudentId(studentId)
+        .orElseThrow(() -> {
+          logger.error("Avatar data not found for student ID: {}", studentId);
+          return new AvatarProcessingException("Аватар для студента с ID " + studentId + " не найден");
+        });
+
+    String eTag = "\"" + blob.getContentHash() + "\"";
+    // Большие картинки в кэш не попадут: буфер вне кучи под них не заводим, отдаём потоком
+    if (!avatarCache.isCacheable(blob.getFileSize())) {
+      logger.debug("Streaming uncacheable avatar of student ID {} from DB", studentId);
+      Resource resource = new AvatarBlobResource(transactionManager, avatarBlobRepository,
+          blob.getContentHash(), blob.getFileSize());
+      return new AvatarFile(resource, blob.getMediaType(), blob.getFileSize(), -1, eTag);
+    }
+
+    // Читаем из базы сразу в буфер вне кучи
+    ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(blob.getFileSize()));
+    try (ReadableByteChannel channel = Channels.newChannel(blob.getData().getBinaryStream())) {
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // читаем, пока буфер не заполнится
+      }
+    } catch (IOException | SQLException e) {
+      logger.error("Error reading avatar data from DB for student ID: {}", studentId, e);
+      throw new AvatarProcessingException("Ошибка при чтении аватара из базы данных", e);
+    }
+    buffer.flip();
+
+    AvatarCache.Entry entry = new AvatarCache.Entry(buffer, blob.getMediaType(), -1, eTag);
+    avatarCache.put(key, entry, generation);
+    return toAvatarFile(entry, studentId);
+  }
+
+  public AvatarFile getAvatarFile(Long studentId, Integer size) {
+    logger.info("Was invoked method for get avatar file by student ID: {}, size: {}", studentId, size);
+
+    Integer variantSize = size != null ? avatarVariantGenerator.resolveSize(size) : null;
+    AvatarCache.Key key = new AvatarCache.Key(studentId, variantSize != null ? variantSize : 0);
+    AvatarCache.Entry cached = avatarCache.get(key);
+    if (cached != null) {
+      return toAvatarFile(cached, studentId);
+    }
+    long generation = avatarCache.generation(studentId);
 
     Avatar avatar = findAvatar(studentId);
     Path filePath = Path.of(avatar.getFilePath());
-    logger.debug("Reading avatar file from: {}", filePath);
+    String mediaType = avatar.getMediaType();
+    String contentHash = avatar.getBlob() != null ? avatar.getBlob().getContentHash() : null;
+    String eTagValue = contentHash;
+    int servedSize = 0;
 
-    try {
-      byte[] data = Files.readAllBytes(filePath);
-      logger.debug("Successfully read avatar file data for student ID: {}", studentId);
-      return data;
-    } catch (IOException e) {
-      logger.error("Error reading avatar file from disk for student ID: {}", studentId, e);
-      throw new AvatarProcessingException("Ошибка при чтении файла аватара с диска", e);
+    // Размер и дату изменения берём одним чтением атрибутов, сам файл не читаем:
+    // содержимое отдаётся потоком прямо в ответ
+    BasicFileAttributes attributes = null;
+
+    // Картинки, которые не удалось декодировать, копий не получат: сразу отдаём оригинал
+    if (variantSize != null && contentHash != null
+        && avatarVariantGenerator.canGenerate(contentHash)) {
+      Path variantPath = avatarVariantGenerator.variantPath(filePath, contentHash, mediaType,
+          variantSize);
+      try {
+        attributes = Files.readAttributes(variantPath, BasicFileAttributes.class);
+        filePath = variantPath;
+        mediaType = avatarVariantGenerator.variantMediaType(mediaType);
+        eTagValue = contentHash + "-" + variantSize;
+        servedSize = variantSize;
+      } catch (IOException e) {
+        // Уменьшенной копии ещё нет: отдаём оригинал и просим её создать
+        logger.debug("Avatar variant {} is not ready, serving original", variantPath);
+        avatarVariantGenerator.submit(filePath, contentHash, mediaType);
+      }
+    }
+
+    if (attributes == null) {
+      logger.debug("Reading avatar file attributes from: {}", filePath);
+      try {
+        attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+      } catch (IOException e) {
+        logger.error("Error reading avatar file attributes for student ID: {}", studentId, e);
+        throw new AvatarProcessingException("Ошибка при чтении файла аватара с диска", e);
+      }
+    }
+
+    long fileSize = attributes.size();
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    // Для аватаров с известным хешем содержимого ETag не зависит от даты файла
+    String eTag = eTagValue != null
+        ? "\"" + eTagValue + "\""
+        : "\"" + Long.toHexString(fileSize) + "-" + Long.toHexString(lastModified) + "\"";
+
+    // Кэшируем только то, что запрошено: оригинал вместо неготовой копии не кладём
+    if (servedSize == key.size() && avatarCache.isCacheable(fileSize)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect((int) fileSize);
+      try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+          // читаем, пока буфер не заполнится
+        }
+      } catch (IOException e) {
+        logger.error("Error reading avatar file for student ID: {}", studentId, e);
+        throw new AvatarProcessingException("Ошибка при чтении файла аватара с диска", e);
+      }
+      buffer.flip();
+
+      AvatarCache.Entry entry = new AvatarCache.Entry(buffer, mediaType, lastModified, eTag);
+      avatarCache.put(key, entry, generation);
+      return toAvatarFile(entry, studentId);
     }
+
+    Resource resource = new FileSystemResource(filePath) {
+      @Override
+      public long contentLength() {
+        return fileSize;
+      }
+
+      @Override
+      public long lastModified() {
+        return lastModified;
+      }
+    };
+
+    logger.debug("Avatar file for student ID {}: size={}, eTag={}", studentId, fileSize, eTag);
+    return new AvatarFile(resource, mediaType, fileSize, lastModified, eTag);
+  }
+
+  public AvatarCacheStatsDTO getCacheStats() {
+    return avatarCache.getStats();
+  }
+
+  private AvatarFile toAvatarFile(AvatarCache.Entry entry, Long studentId) {
+    Resource resource = new ByteBufferResource(entry.data(), "avatar of student " + studentId);
+    return new AvatarFile(resource, entry.mediaType(), entry.data().remaining(),
+        entry.lastModified(), entry.eTag());
   }
 
   @Operation(summary = "Получить аватары по 4 на странице")
   public Iterable<Avatar> getAvatarsByPage04(int pageNumber) {
     logger.info("Was invoked method for get avatars by page (4 per page). Page: {}", pageNumber);
 
-    Iterable<Avatar> avatars = avatarRepository.findAllByPage04(pageNumber - 1);
+    Iterable<Avatar> avatars = avatarRepository.findAllByPage04((pageNumber - 1) * 4);
     logger.debug("Retrieved avatars for page {}", pageNumber);
     return avatars;
   }
+
+  public AvatarPageDTO getAvatarsAfter(long cursor, int size) {
+    logger.info("Was invoked method for get avatars after cursor: {}, size: {}", cursor, size);
+
+    List<AvatarInfoDTO> avatars = avatarRepository.findInfoAfter(cursor, PageRequest.of(0, size));
+    // Полная страница означает, что дальше могут быть ещё аватары
+    Long nextCursor = avatars.size() == size ? avatars.get(avatars.size() - 1).getId() : null;
+    logger.debug("Retrieved {} avatars after cursor {}, next cursor: {}",
+        avatars.size(), cursor, nextCursor);
+    return new AvatarPageDTO(avatars, nextCursor);
+  }
 }//class
\ No newline at end of file
@@ -0,0 +1,191 @@
+package ru.hogwarts.school_2.service;
+
+import jakarta.annotation.PreDestroy;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Уменьшенные копии аватаров (например 64/128/256 px по большей стороне).
+// Создаются в фоне ограниченным пулом потоков и лежат рядом с оригиналом
+// под именем {имя оригинала без расширения}_{size}.{ext}; пока копии нет, отдаётся оригинал
+@Component
+public class AvatarVariantGenerator {
+
+  private static final Logger logger = LoggerFactory.getLogger(AvatarVariantGenerator.class);
+
+  private final int[] sizes;
+  private final ThreadPoolExecutor executor;
+  // Хеши, для которых задача уже стоит в очереди, чтобы не ставить её повторно
+  private final Set<String> pending = ConcurrentHashMap.newKeySet();
+  // Хеши картинок, которые ImageIO не смог декодировать (например, WebP без плагина).
+  // Для них копии не создаются и задача больше не ставится — отдаётся оригинал.
+  // По одной записи на картинку, после перезапуска список собирается заново
+  private final Set<String> undecodable = ConcurrentHashMap.newKeySet();
+
+  public AvatarVariantGenerator(
+      @Value("${avatars.variants.sizes:64,128,256}") int[] sizes,
+      @Value("${avatars.variants.pool-size:2}") int poolSize,
+      @Value("${avatars.variants.queue-capacity:100}") int queueCapacity) {
+    this.sizes = Arrays.stream(sizes).sorted().distinct().toArray();
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+          Thread thread = new Thread(runnable, "avatar-variants-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  // Наименьший настроенный размер не меньше запрошенного, null если подходящего нет
+  public Integer resolveSize(int requestedSize) {
+    for (int size : sizes) {
+      if (size >= requestedSize) {
+        return size;
+      }
+    }
+    return null;
+  }
+
+  // Имя копии берётся от файла оригинала, а не от хеша: у каждой записи AvatarBlob свой файл,
+  // и копии удаляются вместе с ним. Для старых файлов {hash}.{ext} имена копий прежние
+  public Path variantPath(Path original, String contentHash, String mediaType, int size) {
+    String fileName = original.getFileName().toString();
+    int dot = fileName.lastIndexOf('.');
+    String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+    return original.resolveSibling(stem + "_" + size + "." + formatName(mediaType));
+  }
+
+  // false, если картинку уже не удалось декодировать и копий у неё не будет
+  public boolean canGenerate(String contentHash) {
+    return !undecodable.contains(contentHash);
+  }
+
+  public String variantMediaType(String mediaType) {
+    return "jpg".equals(formatName(mediaType)) ? "image/jpeg" : "image/png";
+  }
+
+  public List<Path> variantPaths(Path original, String contentHash, String mediaType) {
+    return Arrays.stream(sizes)
+        .mapToObj(size -> variantPath(original, contentHash, mediaType, size))
+        .toList();
+  }
+
+  // Поставить создание копий в очередь. Если очередь заполнена, задача отбрасывается:
+  // копии будут запрошены снова при следующем обращении к аватару
+  public void submit(Path original, String contentHash, String mediaType) {
+    if (undecodable.contains(contentHash) || !pending.add(contentHash)) {
+      return;
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          generate(original, contentHash, mediaType);
+        } finally {
+          pending.remove(contentHash);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pending.remove(contentHash);
+      logger.warn("Avatar variant queue is full, skipping hash {}", contentHash);
+    }
+  }
+
+  private void generate(Path original, String contentHash, String mediaType) {
+    // ImageIO сообщает о недоступном файле тем же IIOException, что и о битой картинке,
+    // поэтому доступность проверяем заранее: недоступный файл в undecodable не попадает
+    if (!Files.isReadable(original)) {
+      logger.warn("Avatar {} is not readable, variants are not created", original);
+      return;
+    }
+    BufferedImage source;
+    try {
+      source = ImageIO.read(original.toFile());
+    } catch (IIOException e) {
+      // Файл прочитан, но картинка повреждена: повторная попытка даст то же самое
+      undecodable.add(contentHash);
+      logger.warn("Could not decode avatar {} for variants, serving the original only",
+          original, e);
+      return;
+    } catch (IOException e) {
+      logger.warn("Could not read avatar {} for variants", original, e);
+      return;
+    }
+    if (source == null) {
+      undecodable.add(contentHash);
+      logger.info("Image format of {} is not supported for variants, serving the original only",
+          original);
+      return;
+    }
+
+    for (int size : sizes) {
+      Path target = variantPath(original, contentHash, mediaType, size);
+      if (Files.exists(target)) {
+        continue;
+      }
+      try {
+        writeVariant(source, target, formatName(mediaType), size);
+        logger.debug("Created avatar variant: {}", target);
+      } catch (IOException e) {
+        logger.warn("Could not create avatar variant {}", target, e);
+      }
+    }
+  }
+
+  private void writeVariant(BufferedImage source, Path target, String formatName, int size)
+      throws IOException {
+    double scale = Math.min(1.0,
+        (double) size / Math.max(source.getWidth(), source.getHeight()));
+    int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+    int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+    // У JPEG нет прозрачности, поэтому для него используем RGB без альфа-канала
+    int type = "jpg".equals(formatName) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+    BufferedImage scaled = new BufferedImage(width, height, type);
+    Graphics2D graphics = scaled.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.drawImage(source, 0, 0, width, height, null);
+    } finally {
+      graphics.dispose();
+    }
+
+    // Пишем во временный файл и переносим, чтобы читатели не увидели недописанную копию
+    Path tempFile = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+    try {
+      ImageIO.write(scaled, formatName, tempFile.toFile());
+      Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private String formatName(String mediaType) {
+    return "image/jpeg".equals(mediaType) ? "jpg" : "png";
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,61 @@
+package ru.hogwarts.school_2.service;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.springframework.core.io.AbstractResource;
+
+// Resource поверх ByteBuffer (в том числе direct, вне кучи). Каждый вызов
+// getInputStream читает свою копию указателей буфера, сами байты не копируются
+public class ByteBufferResource extends AbstractResource {
+
+  private final ByteBuffer buffer;
+  private final String description;
+
+  public ByteBufferResource(ByteBuffer buffer, String description) {
+    this.buffer = buffer.asReadOnlyBuffer();
+    this.description = description;
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    ByteBuffer view = buffer.duplicate();
+    return new InputStream() {
+      @Override
+      public int read() {
+        return view.hasRemaining() ? view.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) {
+        if (!view.hasRemaining()) {
+          return -1;
+        }
+        int count = Math.min(length, view.remaining());
+        view.get(bytes, offset, count);
+        return count;
+      }
+
+      @Override
+      public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, view.remaining()));
+        view.position(view.position() + count);
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return view.remaining();
+      }
+    };
+  }
+
+  @Override
+  public long contentLength() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public String getDescription() {
+    return description;
+  }
+}
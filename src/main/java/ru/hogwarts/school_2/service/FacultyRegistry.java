@@ -0,0 +1,186 @@
+package ru.hogwarts.school_2.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school_2.event.FacultyChangedEvent;
+import ru.hogwarts.school_2.model.Faculty;
+import ru.hogwarts.school_2.repository.FacultyRepository;
+
+// Все факультеты в памяти: неизменяемый снимок с индексами по id, названию и цвету
+// (без учёта регистра). Чтение идёт без блокировок и без базы.
+// После фиксации каждого изменения факультета таблица перечитывается целиком (она маленькая),
+// и новый снимок подменяет старый одной записью. Периодическая перечитка подхватывает
+// изменения с других экземпляров приложения и прямой SQL. До неё снимок может не знать
+// о факультете, созданном на другом экземпляре, поэтому проверки перед записью
+// (findByIdOrLoad, existsByIdOrLoad, findByNameOrLoad) при промахе идут в базу.
+// Наружу отдаются отдельные копии Faculty без студентов, снимок ими не изменить
+@Component
+public class FacultyRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FacultyRegistry.class);
+
+  private final FacultyRepository facultyRepository;
+
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+  private final ReentrantLock reloadLock = new ReentrantLock();
+
+  public FacultyRegistry(FacultyRepository facultyRepository) {
+    this.facultyRepository = facultyRepository;
+  }
+
+  public Optional<Faculty> findById(Long id) {
+    return Optional.ofNullable(snapshot.byId.get(id)).map(Entry::toFaculty);
+  }
+
+  // Как findById, но при промахе факультет ищется в базе по первичному ключу. Если он там
+  // есть, снимок устарел и перечитывается целиком
+  public Optional<Faculty> findByIdOrLoad(Long id) {
+    Optional<Faculty> faculty = findById(id);
+    if (faculty.isPresent() || id == null) {
+      return faculty;
+    }
+    Optional<Faculty> loaded = facultyRepository.findById(id)
+        .map(found -> Entry.fromFaculty(found).toFaculty());
+    if (loaded.isPresent()) {
+      LOGGER.debug("Faculty {} is missing from the registry snapshot, reloading", id);
+      reload();
+    }
+    return loaded;
+  }
+
+  public boolean existsByIdOrLoad(Long id) {
+    return findByIdOrLoad(id).isPresent();
+  }
+
+  public Optional<Faculty> findByName(String name) {
+    return Optional.ofNullable(findEntryByName(snapshot, name)).map(Entry::toFaculty);
+  }
+
+  // Как findByName, но при промахе название ищется в базе: по этой проверке решается,
+  // можно ли занять название
+  public Optional<Faculty> findByNameOrLoad(String name) {
+    Optional<Faculty> faculty = findByName(name);
+    if (faculty.isPresent() || name == null) {
+      return faculty;
+    }
+    Optional<Faculty> loaded = facultyRepository.findByNameIgnoreCase(name)
+        .map(found -> Entry.fromFaculty(found).toFaculty());
+    if (loaded.isPresent()) {
+      LOGGER.debug("Faculty '{}' is missing from the registry snapshot, reloading", name);
+      reload();
+    }
+    return loaded;
+  }
+
+  // Цвет не уникален: при нескольких совпадениях берётся факультет с меньшим id
+  public Optional<Faculty> findByColor(String color) {
+    return findEntriesByColor(snapshot, color).stream().findFirst().map(Entry::toFaculty);
+  }
+
+  // Совпадение по названию или по цвету, по возрастанию id
+  public List<Faculty> findByNameOrColor(String name, String color) {
+    Snapshot current = snapshot;
+    Map<Long, Entry> found = new TreeMap<>();
+    Entry byName = findEntryByName(current, name);
+    if (byName != null) {
+      found.put(byName.id(), byName);
+    }
+    findEntriesByColor(current, color).forEach(entry -> found.put(entry.id(), entry));
+    return found.values().stream().map(Entry::toFaculty).toList();
+  }
+
+  // Все факультеты по возрастанию id
+  public List<Faculty> findAll() {
+    return snapshot.byId.values().stream().map(Entry::toFaculty).toList();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onFacultyChanged(FacultyChangedEvent event) {
+    LOGGER.debug("Reloading faculty registry after change of faculty {}", event.facultyId());
+    reload();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    reload();
+  }
+
+  @Scheduled(initialDelayString = "${faculties.registry.reload-interval-ms:300000}",
+      fixedDelayString = "${faculties.registry.reload-interval-ms:300000}")
+  public void reload() {
+    reloadLock.lock();
+    try {
+      List<Entry> entries = facultyRepository.findAll().stream()
+          .map(Entry::fromFaculty)
+          .sorted(Comparator.comparing(Entry::id))
+          .toList();
+      snapshot = Snapshot.of(entries);
+      LOGGER.debug("Faculty registry reloaded: {} faculties", entries.size());
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  private static Entry findEntryByName(Snapshot current, String name) {
+    return name == null ? null : current.byName.get(fold(name));
+  }
+
+  private static List<Entry> findEntriesByColor(Snapshot current, String color) {
+    return color == null ? List.of() : current.byColor.getOrDefault(fold(color), List.of());
+  }
+
+  private static String fold(String value) {
+    return value.toLowerCase(Locale.ROOT);
+  }
+
+  private record Entry(Long id, String name, String color) {
+
+    private static Entry fromFaculty(Faculty faculty) {
+      return new Entry(faculty.getId(), faculty.getName(), faculty.getColor());
+    }
+
+    private Faculty toFaculty() {
+      Faculty faculty = new Faculty(name, color);
+      faculty.setId(id);
+      return faculty;
+    }
+  }
+
+  private record Snapshot(Map<Long, Entry> byId, Map<String, Entry> byName,
+                          Map<String, List<Entry>> byColor) {
+
+    private static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), Map.of());
+
+    // entries уже отсортированы по id
+    private static Snapshot of(List<Entry> entries) {
+      Map<Long, Entry> byId = new LinkedHashMap<>();
+      Map<String, Entry> byName = new HashMap<>();
+      Map<String, List<Entry>> byColor = new HashMap<>();
+      for (Entry entry : entries) {
+        byId.put(entry.id(), entry);
+        byName.put(fold(entry.name()), entry);
+        byColor.computeIfAbsent(fold(entry.color()), key -> new ArrayList<>()).add(entry);
+      }
+      byColor.replaceAll((key, list) -> List.copyOf(list));
+      return new Snapshot(Collections.unmodifiableMap(byId), Map.copyOf(byName),
+          Map.copyOf(byColor));
+    }
+  }
+
+}//class
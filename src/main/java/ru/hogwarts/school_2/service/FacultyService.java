@@ -1,15 +1,20 @@
 package ru.hogwarts.school_2.service;
 
 import jakarta.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.hogwarts.school_2.dto.FacultyDTO;
+import ru.hogwarts.school_2.dto.FacultyOverviewDTO;
 import ru.hogwarts.school_2.dto.StudentDTO;
 import ru.hogwarts.school_2.model.Faculty;
 import ru.hogwarts.school_2.repository.FacultyRepository;
@@ -21,16 +26,19 @@ public class FacultyService {
 
   private final FacultyRepository facultyRepository;
   private final StudentRepository studentRepository;
+  private final FacultyRegistry facultyRegistry;
   private static final Logger logger = LoggerFactory.getLogger(FacultyService.class);
   private StudentService studentService;
 
   @Autowired
   public FacultyService(FacultyRepository facultyRepository,
       StudentRepository studentRepository,
-      StudentService studentService) {
+      StudentService studentService,
+      FacultyRegistry facultyRegistry) {
     this.facultyRepository = facultyRepository;
     this.studentRepository = studentRepository;
     this.studentService = studentService;
+    this.facultyRegistry = facultyRegistry;
   }
 
   @Transactional
@@ -38,12 +46,20 @@ public class FacultyService {
     logger.info("Was invoked method for add faculty");
 
     logger.debug("Attempting to add faculty: name={}, color={}", faculty.getName(), faculty.getColor());
-    if (facultyRepository.findByNameIgnoreCase(faculty.getName()).isPresent()) {
+    if (facultyRegistry.findByNameOrLoad(faculty.getName()).isPresent()) {
       logger.error("Faculty with name {} already exists", faculty.getName());
       throw new IllegalStateException("Факультет с таким названием уже существует");
     }
 
-    Faculty savedFaculty = facultyRepository.save(faculty);
+    // Одновременное добавление того же названия проверку проходит, его отклонит
+    // уникальный индекс (вставка с IDENTITY выполняется сразу)
+    Faculty savedFaculty;
+    try {
+      savedFaculty = facultyRepository.save(faculty);
+    } catch (DataIntegrityViolationException e) {
+      logger.error("Faculty with name {} was added concurrently", faculty.getName(), e);
+      throw new IllegalStateException("Факультет с таким названием уже существует");
+    }
     logger.debug("Faculty added successfully with ID: {}", savedFaculty.getId());
     return savedFaculty;
   }
@@ -55,12 +71,12 @@ public class FacultyService {
     logger.debug("Updating faculty: ID={}, name={}, color={}",
         faculty.getId(), faculty.getName(), faculty.getColor());
 
-    if (!facultyRepository.existsById(faculty.getId())) {
+    if (!facultyRegistry.existsByIdOrLoad(faculty.getId())) {
       logger.error("Faculty with ID {} not found for update", faculty.getId());
       throw new EntityNotFoundException("Факультет с ID " + faculty.getId() + " не существует");
     }
 
-    facultyRepository.findByNameIgnoreCase(faculty.getName())
+    facultyRegistry.findByNameOrLoad(faculty.getName())
         .filter(f -> !f.getId().equals(faculty.getId()))
         .ifPresent(f -> {
           logger.error("Faculty with name {} already exists (ID conflict)", faculty.getName());
@@ -68,7 +84,15 @@ public class FacultyService {
               "Факультет с названием " + faculty.getName() + " уже существует");
         });
 
-    Faculty updatedFaculty = facultyRepository.save(faculty);
+    // saveAndFlush: нарушение уникальности от одновременной записи ловим здесь, а не при фиксации
+    Faculty updatedFaculty;
+    try {
+      updatedFaculty = facultyRepository.saveAndFlush(faculty);
+    } catch (DataIntegrityViolationException e) {
+      logger.error("Faculty with name {} was saved concurrently", faculty.getName(), e);
+      throw new IllegalStateException(
+          "Факультет с названием " + faculty.getName() + " уже существует");
+    }
     logger.debug("Faculty with ID {} updated successfully", faculty.getId());
     return updatedFaculty;
   }
@@ -82,7 +106,7 @@ public class FacultyService {
       return List.of();
     }
 
-    List<Faculty> result = facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(name, color);
+    List<Faculty> result = facultyRegistry.findByNameOrColor(name, color);
     logger.debug("Found {} faculties matching criteria", result.size());
     return result;
   }
@@ -90,7 +114,9 @@ public class FacultyService {
   public Optional<Faculty> getFacultyById(long id) {
     logger.info("Was invoked method for get faculty by ID: {}", id);
 
-    Optional<Faculty> faculty = facultyRepository.findById(id);
+    // По этой проверке контроллер решает, удалять ли факультет, поэтому промах реестра
+    // перепроверяется в базе
+    Optional<Faculty> faculty = facultyRegistry.findByIdOrLoad(id);
     if (faculty.isEmpty()) {
       logger.warn("Faculty with ID {} not found", id);
     } else {
@@ -102,7 +128,7 @@ public class FacultyService {
   public Optional<Faculty> getFacultyByName(String name) {
     logger.info("Was invoked method for get faculty by name: {}", name);
 
-    Optional<Faculty> faculty = facultyRepository.findByNameIgnoreCase(name);
+    Optional<Faculty> faculty = facultyRegistry.findByName(name);
     if (faculty.isEmpty()) {
       logger.warn("Faculty with name {} not found", name);
     } else {
@@ -114,7 +140,7 @@ public class FacultyService {
   public Optional<Faculty> getFacultyByColor(String color) {
     logger.info("Was invoked method for get faculty by color: {}", color);
 
-    Optional<Faculty> faculty = facultyRepository.findByColorIgnoreCase(color);
+    Optional<Faculty> faculty = facultyRegistry.findByColor(color);
     if (faculty.isEmpty()) {
       logger.warn("Faculty with color {} not found", color);
     } else {
@@ -126,11 +152,45 @@ public class FacultyService {
   public List<Faculty> getAllFaculties() {
     logger.info("Was invoked method for get all faculties");
 
-    List<Faculty> faculties = facultyRepository.findAll();
-    logger.debug("Retrieved {} faculties from database", faculties.size());
+    List<Faculty> faculties = facultyRegistry.findAll();
+    logger.debug("Retrieved {} faculties from registry", faculties.size());
     return faculties;
   }
 
+  // Все факультеты с количеством студентов, средним возрастом и числом юношей и девушек —
+  // один запрос с GROUP BY. С withRoster к каждому факультету добавляется страница
+  // его студентов, для всех факультетов сразу — ещё один запрос
+  public List<FacultyOverviewDTO> getFacultyOverview(boolean withRoster, int rosterPage,
+      int rosterSize) {
+    logger.info("Was invoked method for get faculty overview, roster={}, page={}, size={}",
+        withRoster, rosterPage, rosterSize);
+
+    List<FacultyOverviewDTO> overview = new ArrayList<>();
+    for (Object[] row : facultyRepository.findOverviewRows()) {
+      overview.add(new FacultyOverviewDTO((Long) row[0], (String) row[1], (String) row[2],
+          ((Number) row[3]).longValue(),
+          row[4] != null ? ((Number) row[4]).doubleValue() : null,
+          row[5] != null ? ((Number) row[5]).longValue() : 0,
+          row[6] != null ? ((Number) row[6]).longValue() : 0,
+          withRoster ? new ArrayList<>() : null));
+    }
+
+    if (withRoster && !overview.isEmpty()) {
+      Map<Long, List<StudentDTO>> rosters = new HashMap<>();
+      for (Object[] row : studentRepository.findRosterPageOfEachFaculty(
+          (long) rosterPage * rosterSize, rosterSize)) {
+        StudentDTO student = new StudentDTO(((Number) row[0]).longValue(), (String) row[1],
+            ((Number) row[2]).intValue(), (String) row[3], ((Number) row[4]).longValue());
+        rosters.computeIfAbsent(student.getFacultyId(), id -> new ArrayList<>()).add(student);
+      }
+      overview.forEach(faculty ->
+          faculty.setRoster(rosters.getOrDefault(faculty.getId(), List.of())));
+    }
+
+    logger.debug("Faculty overview built for {} faculties", overview.size());
+    return overview;
+  }
+
   public FacultyDTO getFacultyByStudentId(Long id) {
     logger.info("Was invoked method for get faculty by student ID: {}", id);
 
@@ -147,7 +207,7 @@ public class FacultyService {
     }
 
     logger.debug("Retrieving faculty with ID: {}", studentDTO.getFacultyId());
-    Faculty faculty = facultyRepository.findById(studentDTO.getFacultyId())
+    Faculty faculty = facultyRegistry.findByIdOrLoad(studentDTO.getFacultyId())
         .orElseThrow(() -> {
           logger.error("Faculty with ID {} not found", studentDTO.getFacultyId());
           return new EntityNotFoundException("Факультет не найден");
@@ -157,11 +217,12 @@ public class FacultyService {
     return new FacultyDTO(faculty.getId(), faculty.getName(), faculty.getColor());
   }
 
-  @Transactional
+  // Не @Transactional: студенты удаляются порциями в отдельных транзакциях, после них
+  // строка факультета удаляется своей короткой транзакцией (deleteById репозитория)
   public void deleteFacultyById(long id) {
     logger.info("Was invoked method for delete faculty by ID: {}", id);
 
-    if (!facultyRepository.existsById(id)) {
+    if (!facultyRegistry.existsByIdOrLoad(id)) {
       logger.error("Faculty with ID {} not found for deletion", id);
       throw new EntityNotFoundException("Факультет с ID " + id + " не существует");
     }
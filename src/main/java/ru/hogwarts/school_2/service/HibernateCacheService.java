@@ -0,0 +1,63 @@
+package ru.hogwarts.school_2.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school_2.config.HibernateCacheConfig;
+import ru.hogwarts.school_2.dto.CacheRegionStatsDTO;
+import ru.hogwarts.school_2.event.StudentsReloadEvent;
+import ru.hogwarts.school_2.model.Student;
+
+// Статистика и сброс кэша второго уровня Hibernate.
+// Изменения через JPA (в том числе JPQL UPDATE/DELETE) Hibernate учитывает в кэше сам,
+// а прямой SQL (COPY при импорте) — нет, поэтому после него кэш студентов сбрасывается
+@Service
+public class HibernateCacheService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HibernateCacheService.class);
+
+  private static final List<String> REGIONS = List.of(
+      HibernateCacheConfig.FACULTY_REGION,
+      HibernateCacheConfig.STUDENT_REGION,
+      HibernateCacheConfig.QUERY_REGION);
+
+  private final SessionFactory sessionFactory;
+
+  public HibernateCacheService(EntityManagerFactory entityManagerFactory) {
+    this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+  }
+
+  public List<CacheRegionStatsDTO> getStats() {
+    LOGGER.info("Was invoked method for get second-level cache stats");
+    Statistics statistics = sessionFactory.getStatistics();
+    List<CacheRegionStatsDTO> result = new ArrayList<>();
+    for (String region : REGIONS) {
+      CacheRegionStatistics regionStatistics = region.equals(HibernateCacheConfig.QUERY_REGION)
+          ? statistics.getQueryRegionStatistics(region)
+          : statistics.getDomainDataRegionStatistics(region);
+      if (regionStatistics == null) {
+        continue;
+      }
+      long hits = regionStatistics.getHitCount();
+      long misses = regionStatistics.getMissCount();
+      result.add(new CacheRegionStatsDTO(region, hits, misses, regionStatistics.getPutCount(),
+          hits + misses == 0 ? 0.0 : (double) hits / (hits + misses)));
+    }
+    return result;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onStudentsReload(StudentsReloadEvent event) {
+    LOGGER.debug("Evicting student second-level cache: {}", event.reason());
+    sessionFactory.getCache().evictEntityData(Student.class);
+    sessionFactory.getCache().evictQueryRegions();
+  }
+
+}//class
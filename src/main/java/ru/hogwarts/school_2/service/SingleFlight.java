@@ -0,0 +1,71 @@
+package ru.hogwarts.school_2.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Склейка одновременных загрузок по одному ключу: первый поток выполняет загрузку,
+// остальные, пришедшие по тому же ключу до её окончания, ждут и получают тот же результат
+// (или то же исключение). Результат не кэшируется: следующий запрос после окончания
+// загрузки снова идёт в базу. Значения отдаются нескольким потокам сразу, поэтому
+// это должны быть DTO, а не сущности, привязанные к сессии Hibernate загрузившего потока.
+// Чужую загрузку ждут не дольше waitTimeout: если она зависла, ожидающий поток загружает сам
+public final class SingleFlight<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SingleFlight.class);
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final long waitTimeoutMs;
+
+  public SingleFlight(Duration waitTimeout) {
+    this.waitTimeoutMs = waitTimeout.toMillis();
+  }
+
+  public V load(K key, Function<K, V> loader) {
+    CompletableFuture<V> created = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      try {
+        return existing.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        LOGGER.warn("Load of {} is still running after {} ms, loading it separately",
+            key, waitTimeoutMs);
+        return loader.apply(key);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        if (e.getCause() instanceof Error error) {
+          throw error;
+        }
+        throw new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Ожидание загрузки прервано", e);
+      }
+    }
+
+    try {
+      V value = loader.apply(key);
+      created.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      created.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, created);
+    }
+  }
+
+  // Сколько загрузок выполняется прямо сейчас
+  public int inFlight() {
+    return inFlight.size();
+  }
+
+}//class
@@ -0,0 +1,111 @@
+package ru.hogwarts.school_2.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school_2.dto.StudentChangeDTO;
+import ru.hogwarts.school_2.dto.StudentChangesDTO;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.model.StudentTombstone;
+import ru.hogwarts.school_2.repository.StudentRepository;
+import ru.hogwarts.school_2.repository.StudentTombstoneRepository;
+
+// Выдача изменений для клиентов синхронизации: только строки, изменённые или удалённые
+// после курсора. Курсор — пара (время изменения в микросекундах, id) последней отданной строки,
+// изменения и удаления идут в общем порядке этой пары.
+// Время изменения ставится до фиксации транзакции, поэтому строки моложе sync.safety-lag-ms
+// не отдаются: иначе транзакция, которая фиксируется позже, могла бы оказаться позади курсора.
+// Поэтому safety-lag должен быть больше самой долгой записи, включая импорт CSV
+@Service
+public class StudentChangesService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StudentChangesService.class);
+
+  private final StudentRepository studentRepository;
+  private final StudentTombstoneRepository studentTombstoneRepository;
+
+  @Value("${sync.safety-lag-ms:5000}")
+  private long safetyLagMs;
+
+  public StudentChangesService(StudentRepository studentRepository,
+      StudentTombstoneRepository studentTombstoneRepository) {
+    this.studentRepository = studentRepository;
+    this.studentTombstoneRepository = studentTombstoneRepository;
+  }
+
+  // cursor == null — с самого начала (первая полная синхронизация)
+  @Transactional(readOnly = true)
+  public StudentChangesDTO getStudentChanges(String cursor, int limit) {
+    LOGGER.info("Was invoked method for get student changes after cursor: {}, limit={}",
+        cursor, limit);
+
+    Instant since = Instant.EPOCH;
+    long afterId = 0;
+    if (cursor != null && !cursor.isBlank()) {
+      String[] parts = cursor.split("_");
+      try {
+        if (parts.length != 2) {
+          throw new NumberFormatException();
+        }
+        since = Instant.EPOCH.plus(Long.parseLong(parts[0]), ChronoUnit.MICROS);
+        afterId = Long.parseLong(parts[1]);
+      } catch (NumberFormatException e) {
+        LOGGER.warn("Invalid changes cursor: {}", cursor);
+        throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+      }
+    }
+    Instant upTo = Instant.now().minusMillis(safetyLagMs);
+    PageRequest page = PageRequest.ofSize(limit + 1);
+
+    List<StudentChangeDTO> students = studentRepository.findChangedAfter(since, afterId, upTo, page);
+    List<StudentTombstone> tombstones =
+        studentTombstoneRepository.findChangedAfter(since, afterId, upTo, page);
+
+    // Слияние двух упорядоченных списков по (время, id), берём первые limit
+    List<StudentDTO> changed = new ArrayList<>();
+    List<Long> deletedIds = new ArrayList<>();
+    int s = 0;
+    int t = 0;
+    Instant lastTime = since;
+    long lastId = afterId;
+    while (changed.size() + deletedIds.size() < limit
+        && (s < students.size() || t < tombstones.size())) {
+      boolean takeStudent = t >= tombstones.size() || (s < students.size()
+          && compare(students.get(s).getUpdatedAt(), students.get(s).getId(),
+          tombstones.get(t).getDeletedAt(), tombstones.get(t).getStudentId()) < 0);
+      if (takeStudent) {
+        StudentChangeDTO student = students.get(s++);
+        changed.add(student.toStudentDTO());
+        lastTime = student.getUpdatedAt();
+        lastId = student.getId();
+      } else {
+        StudentTombstone tombstone = tombstones.get(t++);
+        deletedIds.add(tombstone.getStudentId());
+        lastTime = tombstone.getDeletedAt();
+        lastId = tombstone.getStudentId();
+      }
+    }
+    boolean hasMore = s < students.size() || t < tombstones.size();
+
+    LOGGER.debug("Found {} changed and {} deleted students, hasMore={}",
+        changed.size(), deletedIds.size(), hasMore);
+    return new StudentChangesDTO(changed, deletedIds, toCursor(lastTime, lastId), hasMore);
+  }
+
+  private static int compare(Instant leftTime, long leftId, Instant rightTime, long rightId) {
+    int byTime = leftTime.compareTo(rightTime);
+    return byTime != 0 ? byTime : Long.compare(leftId, rightId);
+  }
+
+  private static String toCursor(Instant time, long id) {
+    return ChronoUnit.MICROS.between(Instant.EPOCH, time) + "_" + id;
+  }
+
+}//class
@@ -0,0 +1,338 @@
+package ru.hogwarts.school_2.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.event.StudentChangedEvent;
+import ru.hogwarts.school_2.event.StudentsReloadEvent;
+import ru.hogwarts.school_2.repository.StudentRepository;
+
+// Снимок студентов по колонкам в массивах примитивов: возраст, пол, факультет.
+// Аналитические запросы (фильтры и группировки) идут параллельным IntStream по индексам строк
+// в общем fork-join пуле, без сущностей и без обращения к базе.
+// Поддерживается так же, как индекс имён: события после фиксации транзакций и периодическая
+// полная перестройка. Удалённая строка заменяется последней, поэтому массивы всегда плотные
+@Component
+public class StudentColumns {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StudentColumns.class);
+
+  public static final byte MALE = 0;
+  public static final byte FEMALE = 1;
+  public static final byte UNKNOWN_GENDER = -1;
+  // facultyId для студентов без факультета
+  public static final long NO_FACULTY = 0L;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final StudentRepository studentRepository;
+  private final TransactionTemplate readTransaction;
+
+  // Запросы читают массивы под read-блокировкой, изменения применяются под write-блокировкой.
+  // updateLock выстраивает изменения по одному. Перестройка читает базу без блокировок,
+  // события за это время копятся в pendingEvents и применяются к новому снимку перед подменой
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ReentrantLock updateLock = new ReentrantLock();
+  private List<StudentChangedEvent> pendingEvents;
+  private boolean rebuildRequested;
+
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private int[] age = new int[INITIAL_CAPACITY];
+  private byte[] gender = new byte[INITIAL_CAPACITY];
+  private long[] facultyId = new long[INITIAL_CAPACITY];
+  private int size;
+  private Map<Long, Integer> rowById = new HashMap<>();
+
+  public StudentColumns(StudentRepository studentRepository,
+      PlatformTransactionManager transactionManager) {
+    this.studentRepository = studentRepository;
+    // Перестройка запускается и из слушателей после фиксации, там нужна своя транзакция
+    this.readTransaction = new TransactionTemplate(transactionManager);
+    this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.readTransaction.setReadOnly(true);
+  }
+
+  // Условия фильтра; null — условие не задано
+  public record Filter(Integer minAge, Integer maxAge, Byte gender, Long facultyId) {
+
+    public static final Filter ALL = new Filter(null, null, null, null);
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public long count(Filter filter) {
+    lock.readLock().lock();
+    try {
+      return IntStream.range(0, size).parallel().filter(predicate(filter)).count();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // Возраст -> количество студентов, по возрастанию возраста
+  public Map<Integer, Long> ageDistribution(Filter filter) {
+    lock.readLock().lock();
+    try {
+      IntPredicate matches = predicate(filter);
+      int maxAge = IntStream.range(0, size).parallel().filter(matches)
+          .map(row -> age[row]).max().orElse(-1);
+      if (maxAge < 0) {
+        return Map.of();
+      }
+      long[] histogram = IntStream.range(0, size).parallel().filter(matches)
+          .collect(() -> new long[maxAge + 1],
+              (counts, row) -> counts[Math.max(age[row], 0)]++,
+              StudentColumns::addCounts);
+
+      Map<Integer, Long> result = new LinkedHashMap<>();
+      for (int i = 0; i < histogram.length; i++) {
+        if (histogram[i] > 0) {
+          result.put(i, histogram[i]);
+        }
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // facultyId -> [юношей, девушек]; студенты без факультета — под ключом NO_FACULTY
+  public Map<Long, long[]> genderByFaculty(Filter filter) {
+    lock.readLock().lock();
+    try {
+      Map<Long, long[]> groups = IntStream.range(0, size).parallel().filter(predicate(filter))
+          .collect(HashMap<Long, long[]>::new,
+              (partial, row) -> {
+                if (gender[row] != UNKNOWN_GENDER) {
+                  partial.computeIfAbsent(facultyId[row], key -> new long[2])[gender[row]]++;
+                }
+              },
+              (left, right) -> right.forEach((key, counts) ->
+                  left.merge(key, counts, StudentColumns::addCounts)));
+      return new TreeMap<>(groups);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public static byte encodeGender(String value) {
+    if (value == null || value.isEmpty()) {
+      return UNKNOWN_GENDER;
+    }
+    return switch (Character.toUpperCase(value.charAt(0))) {
+      case 'М' -> MALE;
+      case 'Ж' -> FEMALE;
+      default -> UNKNOWN_GENDER;
+    };
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onStudentChanged(StudentChangedEvent event) {
+    updateLock.lock();
+    lock.writeLock().lock();
+    try {
+      apply(event);
+      if (pendingEvents != null) {
+        pendingEvents.add(event);
+      }
+    } finally {
+      lock.writeLock().unlock();
+      updateLock.unlock();
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onStudentsReload(StudentsReloadEvent event) {
+    LOGGER.debug("Rebuilding student columns: {}", event.reason());
+    rebuild();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    rebuild();
+  }
+
+  // Строки читаются курсором сразу в новые массивы, без блокировок: аналитика в это время
+  // работает по старому снимку, изменения применяются к нему и запоминаются. Под блокировкой
+  // к новым массивам применяются запомненные изменения, и они подменяют старые.
+  // Запрос перестройки во время перестройки выполняется сразу после неё
+  @Scheduled(initialDelayString = "${students.columns.rebuild-interval-ms:600000}",
+      fixedDelayString = "${students.columns.rebuild-interval-ms:600000}")
+  public void rebuild() {
+    updateLock.lock();
+    try {
+      if (pendingEvents != null) {
+        rebuildRequested = true;
+        return;
+      }
+      pendingEvents = new ArrayList<>();
+    } finally {
+      updateLock.unlock();
+    }
+
+    boolean again;
+    do {
+      Rows rows = new Rows();
+      try {
+        readTransaction.executeWithoutResult(status -> {
+          try (Stream<StudentDTO> students = studentRepository.streamAllDto()) {
+            students.forEach(rows::add);
+          }
+        });
+      } catch (RuntimeException e) {
+        updateLock.lock();
+        try {
+          pendingEvents = null;
+          rebuildRequested = false;
+        } finally {
+          updateLock.unlock();
+        }
+        throw e;
+      }
+
+      updateLock.lock();
+      lock.writeLock().lock();
+      try {
+        ids = rows.ids;
+        age = rows.age;
+        gender = rows.gender;
+        facultyId = rows.facultyId;
+        rowById = rows.rowById;
+        size = rows.size;
+        pendingEvents.forEach(this::apply);
+        again = rebuildRequested;
+        rebuildRequested = false;
+        pendingEvents = again ? new ArrayList<>() : null;
+      } finally {
+        lock.writeLock().unlock();
+        updateLock.unlock();
+      }
+      LOGGER.info("Student columns rebuilt: {} students", rows.size);
+    } while (again);
+  }
+
+  private void apply(StudentChangedEvent event) {
+    if (event.after() == null) {
+      removeRow(event.studentId());
+    } else {
+      putRow(event.after());
+    }
+  }
+
+  private IntPredicate predicate(Filter filter) {
+    IntPredicate predicate = row -> true;
+    if (filter.minAge() != null) {
+      int min = filter.minAge();
+      predicate = predicate.and(row -> age[row] >= min);
+    }
+    if (filter.maxAge() != null) {
+      int max = filter.maxAge();
+      predicate = predicate.and(row -> age[row] <= max);
+    }
+    if (filter.gender() != null) {
+      byte value = filter.gender();
+      predicate = predicate.and(row -> gender[row] == value);
+    }
+    if (filter.facultyId() != null) {
+      long value = filter.facultyId();
+      predicate = predicate.and(row -> facultyId[row] == value);
+    }
+    return predicate;
+  }
+
+  private void putRow(StudentDTO student) {
+    Integer row = rowById.get(student.getId());
+    if (row == null) {
+      if (size == ids.length) {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        age = Arrays.copyOf(age, capacity);
+        gender = Arrays.copyOf(gender, capacity);
+        facultyId = Arrays.copyOf(facultyId, capacity);
+      }
+      row = size++;
+      rowById.put(student.getId(), row);
+    }
+    ids[row] = student.getId();
+    age[row] = student.getAge();
+    gender[row] = encodeGender(student.getGender());
+    facultyId[row] = student.getFacultyId() != null ? student.getFacultyId() : NO_FACULTY;
+  }
+
+  private void removeRow(Long id) {
+    Integer row = rowById.remove(id);
+    if (row == null) {
+      return;
+    }
+    int last = --size;
+    if (row != last) {
+      ids[row] = ids[last];
+      age[row] = age[last];
+      gender[row] = gender[last];
+      facultyId[row] = facultyId[last];
+      rowById.put(ids[row], row);
+    }
+  }
+
+  private static long[] addCounts(long[] left, long[] right) {
+    for (int i = 0; i < right.length; i++) {
+      left[i] += right[i];
+    }
+    return left;
+  }
+
+  // Новые массивы при перестройке, растут по мере чтения курсора
+  private static final class Rows {
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] age = new int[INITIAL_CAPACITY];
+    private byte[] gender = new byte[INITIAL_CAPACITY];
+    private long[] facultyId = new long[INITIAL_CAPACITY];
+    private int size;
+    private final Map<Long, Integer> rowById = new HashMap<>();
+
+    private void add(StudentDTO student) {
+      if (size == ids.length) {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        age = Arrays.copyOf(age, capacity);
+        gender = Arrays.copyOf(gender, capacity);
+        facultyId = Arrays.copyOf(facultyId, capacity);
+      }
+      ids[size] = student.getId();
+      age[size] = student.getAge();
+      gender[size] = encodeGender(student.getGender());
+      facultyId[size] = student.getFacultyId() != null ? student.getFacultyId() : NO_FACULTY;
+      rowById.put(student.getId(), size);
+      size++;
+    }
+  }
+
+}//class
@@ -0,0 +1,299 @@
+package ru.hogwarts.school_2.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.hibernate.Session;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school_2.dto.StudentBulkResultDTO;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.dto.StudentRowErrorDTO;
+import ru.hogwarts.school_2.event.StudentsReloadEvent;
+
+// Импорт студентов из CSV (name,age,gender,facultyId) через COPY в PostgreSQL.
+// Файл читается построчно и сразу уходит во временную таблицу, поэтому размер файла
+// на память не влияет. Проверки, которые требуют базы (факультет, занятое имя,
+// повтор имени в файле), делаются после загрузки несколькими запросами на весь файл
+@Service
+public class StudentCsvImportService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StudentCsvImportService.class);
+
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+  // Столько id выдаёт одно обращение к student_id_seq (allocationSize у Student)
+  private static final int ID_BLOCK_SIZE = 50;
+
+  private static final String CREATE_STAGING =
+      "CREATE TEMP TABLE student_import (row_no BIGINT, name TEXT, age INT, gender TEXT, "
+          + "faculty_id BIGINT, error TEXT) ON COMMIT DROP";
+
+  private static final String COPY_STAGING =
+      "COPY student_import (row_no, name, age, gender, faculty_id) FROM STDIN WITH (FORMAT csv)";
+
+  private static final String MARK_UNKNOWN_FACULTY =
+      "UPDATE student_import i SET error = 'Факультет с ID ' || i.faculty_id || ' не найден' "
+          + "WHERE NOT EXISTS (SELECT 1 FROM faculty f WHERE f.id = i.faculty_id)";
+
+  private static final String MARK_DUPLICATES =
+      "UPDATE student_import i SET error = 'Имя повторяется в загружаемом списке' "
+          + "WHERE i.error IS NULL AND EXISTS (SELECT 1 FROM student_import d "
+          + "WHERE lower(d.name) = lower(i.name) AND d.row_no < i.row_no)";
+
+  private static final String MARK_EXISTING =
+      "UPDATE student_import i SET error = 'Студент с таким именем уже существует!' "
+          + "WHERE i.error IS NULL AND EXISTS (SELECT 1 FROM student s WHERE lower(s.name) = lower(i.name))";
+
+  private static final String UPDATE_EXISTING =
+      "UPDATE student s SET age = i.age, gender = i.gender, faculty_id = i.faculty_id, "
+          + "updated_at = clock_timestamp() "
+          + "FROM student_import i WHERE i.error IS NULL AND lower(s.name) = lower(i.name)";
+
+  private static final String DELETE_UPDATED =
+      "DELETE FROM student_import i WHERE i.error IS NULL "
+          + "AND EXISTS (SELECT 1 FROM student s WHERE lower(s.name) = lower(i.name))";
+
+  // Одно обращение к последовательности на каждые 50 строк: id = начало блока + номер в блоке,
+  // так же, как их раздаёт Hibernate с pooled-lo.
+  // updated_at — clock_timestamp(), а не now(): время начала долгой транзакции импорта
+  // могло бы оказаться позади курсора /students/changes к моменту фиксации. Запись строк
+  // идёт последней в транзакции, и всё равно от отметки до фиксации проходит время записи —
+  // оно должно быть меньше sync.safety-lag-ms (см. importCsv)
+  private static final String INSERT_NEW =
+      "WITH rows AS (SELECT i.*, row_number() OVER (ORDER BY i.row_no) - 1 AS rn "
+          + "FROM student_import i WHERE i.error IS NULL), "
+          + "blocks AS (SELECT b, nextval('student_id_seq') AS lo "
+          + "FROM generate_series(0, (SELECT (COUNT(*) - 1) / " + ID_BLOCK_SIZE + " FROM rows)) b) "
+          + "INSERT INTO student (id, name, age, gender, faculty_id, updated_at) "
+          + "SELECT blocks.lo + rows.rn % " + ID_BLOCK_SIZE + ", rows.name, rows.age, rows.gender, "
+          + "rows.faculty_id, clock_timestamp() "
+          + "FROM rows JOIN blocks ON blocks.b = rows.rn / " + ID_BLOCK_SIZE;
+
+  private static final String SELECT_ERRORS =
+      "SELECT row_no, name, error FROM student_import WHERE error IS NOT NULL ORDER BY row_no";
+
+  private final StudentService studentService;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Value("${sync.safety-lag-ms:5000}")
+  private long safetyLagMs;
+
+  public StudentCsvImportService(StudentService studentService,
+      ApplicationEventPublisher eventPublisher) {
+    this.studentService = studentService;
+    this.eventPublisher = eventPublisher;
+  }
+
+  // Номер строки в ошибках — номер записи в файле, считая заголовок
+  @Transactional
+  public StudentBulkResultDTO importCsv(InputStream inputStream, boolean header, boolean upsert) {
+    LOGGER.info("Was invoked method for CSV import of students, upsert={}", upsert);
+
+    return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+      if (!connection.isWrapperFor(BaseConnection.class)) {
+        throw new IllegalStateException("Импорт CSV поддерживается только для PostgreSQL");
+      }
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(CREATE_STAGING);
+      }
+
+      List<StudentRowErrorDTO> errors = new ArrayList<>();
+      long copied = copyToStaging(connection, inputStream, header, errors);
+
+      try (Statement statement = connection.createStatement()) {
+        statement.executeUpdate(MARK_UNKNOWN_FACULTY);
+        statement.executeUpdate(MARK_DUPLICATES);
+        if (!upsert) {
+          statement.executeUpdate(MARK_EXISTING);
+        }
+      }
+      try (PreparedStatement statement = connection.prepareStatement(SELECT_ERRORS);
+          ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          errors.add(new StudentRowErrorDTO(resultSet.getLong(1), resultSet.getString(2),
+              resultSet.getString(3)));
+        }
+      }
+      errors.sort(Comparator.comparingLong(StudentRowErrorDTO::getRow));
+
+      // Запись в student — последней: updated_at ставится здесь, и до фиксации остаётся
+      // только время самой записи. Если оно больше sync.safety-lag-ms, клиент /students/changes
+      // может пропустить эти строки — значит, safety-lag нужно увеличить
+      long writeStarted = System.nanoTime();
+      int updated = 0;
+      if (upsert) {
+        updated = executeUpdate(connection, UPDATE_EXISTING);
+        executeUpdate(connection, DELETE_UPDATED);
+      }
+      int created = copied == 0 ? 0 : executeUpdate(connection, INSERT_NEW);
+      long writeMs = (System.nanoTime() - writeStarted) / 1_000_000;
+      if (writeMs > safetyLagMs) {
+        LOGGER.warn("CSV import wrote students for {} ms, longer than sync.safety-lag-ms={}; "
+            + "/students/changes clients may miss these rows", writeMs, safetyLagMs);
+      }
+
+      LOGGER.debug("CSV import finished: copied={}, created={}, updated={}, rejected={}",
+          copied, created, updated, errors.size());
+      if (created + updated > 0) {
+        // Строки записаны SQL-запросами, слушатели JPA о них не знают
+        eventPublisher.publishEvent(new StudentsReloadEvent("CSV import"));
+      }
+      return new StudentBulkResultDTO(created, updated, errors);
+    });
+  }
+
+  // Разбирает файл и передаёт прошедшие проверку строки в COPY. Возвращает число переданных строк
+  private long copyToStaging(Connection connection, InputStream inputStream, boolean header,
+      List<StudentRowErrorDTO> errors) throws SQLException {
+    CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+    CopyIn copyIn = copyManager.copyIn(COPY_STAGING);
+    long copied = 0;
+    try {
+      BufferedReader reader = new BufferedReader(
+          new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+      StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+      long rowNo = 0;
+      List<String> fields;
+      while ((fields = readRecord(reader)) != null) {
+        rowNo++;
+        if (header && rowNo == 1) {
+          continue;
+        }
+        if (fields.size() == 1 && fields.get(0).isBlank()) {
+          continue;
+        }
+
+        StudentDTO studentDTO = new StudentDTO();
+        String error = toStudent(fields, studentDTO);
+        if (error == null) {
+          error = studentService.validateStudent(studentDTO);
+        }
+        if (error != null) {
+          errors.add(new StudentRowErrorDTO(rowNo, studentDTO.getName(), error));
+          continue;
+        }
+
+        buffer.append(rowNo).append(',');
+        appendCsv(buffer, studentDTO.getName()).append(',')
+            .append(studentDTO.getAge()).append(',')
+            .append(studentDTO.getGender().toUpperCase()).append(',')
+            .append(studentDTO.getFacultyId()).append('\n');
+        copied++;
+        if (buffer.length() >= COPY_BUFFER_SIZE) {
+          writeToCopy(copyIn, buffer);
+        }
+      }
+      writeToCopy(copyIn, buffer);
+      copyIn.endCopy();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Не удалось прочитать CSV", e);
+    } finally {
+      if (copyIn.isActive()) {
+        copyIn.cancelCopy();
+      }
+    }
+    return copied;
+  }
+
+  // Заполняет DTO полями записи, при ошибке формата возвращает её текст
+  private String toStudent(List<String> fields, StudentDTO studentDTO) {
+    if (fields.size() != 4) {
+      return "Ожидается 4 поля: name,age,gender,facultyId";
+    }
+    studentDTO.setName(fields.get(0).trim());
+    studentDTO.setGender(fields.get(2).trim().toLowerCase());
+    try {
+      studentDTO.setAge(Integer.parseInt(fields.get(1).trim()));
+    } catch (NumberFormatException e) {
+      return "Возраст должен быть числом";
+    }
+    try {
+      studentDTO.setFacultyId(Long.parseLong(fields.get(3).trim()));
+    } catch (NumberFormatException e) {
+      return "ID факультета должен быть числом";
+    }
+    return null;
+  }
+
+  private static int executeUpdate(Connection connection, String sql) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      return statement.executeUpdate(sql);
+    }
+  }
+
+  private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+    if (buffer.length() > 0) {
+      byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+      copyIn.writeToCopy(bytes, 0, bytes.length);
+      buffer.setLength(0);
+    }
+  }
+
+  private static StringBuilder appendCsv(StringBuilder buffer, String value) {
+    return buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+  }
+
+  // Читает одну запись CSV (RFC 4180: поля в кавычках могут содержать запятые,
+  // переводы строк и удвоенные кавычки). null — конец файла
+  static List<String> readRecord(BufferedReader reader) throws IOException {
+    int c = reader.read();
+    if (c == -1) {
+      return null;
+    }
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    while (c != -1) {
+      if (quoted) {
+        if (c == '"') {
+          reader.mark(1);
+          int next = reader.read();
+          if (next == '"') {
+            field.append('"');
+          } else {
+            quoted = false;
+            reader.reset();
+          }
+        } else {
+          field.append((char) c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (c == '\n') {
+        break;
+      } else if (c != '\r' && c != '\uFEFF') {
+        field.append((char) c);
+      }
+      c = reader.read();
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+}//class
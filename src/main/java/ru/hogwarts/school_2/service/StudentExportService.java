@@ -0,0 +1,148 @@
+package ru.hogwarts.school_2.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+import javax.sql.DataSource;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Выгрузка всех студентов с названиями факультетов прямо из базы в ответ.
+// CSV отдаёт сам PostgreSQL через COPY ... TO STDOUT, NDJSON пишется из курсора
+// (строки читаются порциями по fetch size). В памяти держится только текущая порция.
+// Одновременно выполняется не больше exports.max-concurrent выгрузок, остальные ждут
+// своей очереди, чтобы ночные выгрузки не забирали все соединения у API
+@Service
+public class StudentExportService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StudentExportService.class);
+
+  private static final int FETCH_SIZE = 1000;
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private static final String SELECT_STUDENTS =
+      "SELECT s.id, s.name, s.age, s.gender, f.id AS faculty_id, f.name AS faculty_name%s "
+          + "FROM student s LEFT JOIN faculty f ON f.id = s.faculty_id ORDER BY s.id";
+
+  private static final String HAS_AVATAR_COLUMN =
+      ", EXISTS (SELECT 1 FROM avatar a WHERE a.student_id = s.id) AS has_avatar";
+
+  private final DataSource dataSource;
+  private final ObjectMapper objectMapper;
+  private final Semaphore exportPermits;
+
+  public StudentExportService(DataSource dataSource, ObjectMapper objectMapper,
+      @Value("${exports.max-concurrent:2}") int maxConcurrentExports) {
+    this.dataSource = dataSource;
+    this.objectMapper = objectMapper;
+    this.exportPermits = new Semaphore(maxConcurrentExports, true);
+  }
+
+  public void exportCsv(OutputStream outputStream, boolean withAvatar, boolean gzip)
+      throws IOException {
+    LOGGER.info("Was invoked method for CSV export of students, withAvatar={}, gzip={}",
+        withAvatar, gzip);
+    String sql = "COPY (" + selectStudents(withAvatar) + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+
+    runExport(outputStream, gzip, (connection, out) -> {
+      if (!connection.isWrapperFor(BaseConnection.class)) {
+        throw new IllegalStateException("Выгрузка CSV поддерживается только для PostgreSQL");
+      }
+      long rows = new CopyManager(connection.unwrap(BaseConnection.class)).copyOut(sql, out);
+      LOGGER.debug("Exported {} students as CSV", rows);
+    });
+  }
+
+  public void exportNdjson(OutputStream outputStream, boolean withAvatar, boolean gzip)
+      throws IOException {
+    LOGGER.info("Was invoked method for NDJSON export of students, withAvatar={}, gzip={}",
+        withAvatar, gzip);
+
+    runExport(outputStream, gzip, (connection, out) -> {
+      long count = 0;
+      try (PreparedStatement statement = connection.prepareStatement(selectStudents(withAvatar),
+          ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+        statement.setFetchSize(FETCH_SIZE);
+        try (ResultSet resultSet = statement.executeQuery();
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+          generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+          while (resultSet.next()) {
+            generator.writeStartObject();
+            generator.writeNumberField("id", resultSet.getLong("id"));
+            generator.writeStringField("name", resultSet.getString("name"));
+            generator.writeNumberField("age", resultSet.getInt("age"));
+            generator.writeStringField("gender", resultSet.getString("gender"));
+            long facultyId = resultSet.getLong("faculty_id");
+            if (resultSet.wasNull()) {
+              generator.writeNullField("facultyId");
+            } else {
+              generator.writeNumberField("facultyId", facultyId);
+            }
+            generator.writeStringField("facultyName", resultSet.getString("faculty_name"));
+            if (withAvatar) {
+              generator.writeBooleanField("hasAvatar", resultSet.getBoolean("has_avatar"));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (++count % FETCH_SIZE == 0) {
+              generator.flush();
+            }
+          }
+        }
+      }
+      LOGGER.debug("Exported {} students as NDJSON", count);
+    });
+  }
+
+  private static String selectStudents(boolean withAvatar) {
+    return String.format(SELECT_STUDENTS, withAvatar ? HAS_AVATAR_COLUMN : "");
+  }
+
+  // Соединение берётся только после получения разрешения и живёт одну выгрузку.
+  // autoCommit выключен: без транзакции драйвер PostgreSQL игнорирует fetch size
+  // и читает весь результат в память
+  private void runExport(OutputStream outputStream, boolean gzip, ExportWork work)
+      throws IOException {
+    try {
+      exportPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Выгрузка прервана в очереди");
+    }
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      connection.setReadOnly(true);
+      OutputStream out = gzip ? new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE) : outputStream;
+      work.run(connection, out);
+      if (out instanceof GZIPOutputStream gzipOut) {
+        gzipOut.finish();
+      }
+      out.flush();
+      connection.commit();
+    } catch (SQLException e) {
+      LOGGER.error("Student export failed: {}", e.getMessage(), e);
+      throw new IOException("Ошибка выгрузки студентов", e);
+    } finally {
+      exportPermits.release();
+    }
+  }
+
+  @FunctionalInterface
+  private interface ExportWork {
+
+    void run(Connection connection, OutputStream out) throws SQLException, IOException;
+  }
+
+}//class
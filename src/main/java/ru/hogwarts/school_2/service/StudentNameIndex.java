@@ -0,0 +1,291 @@
+package ru.hogwarts.school_2.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.event.StudentChangedEvent;
+import ru.hogwarts.school_2.event.StudentsReloadEvent;
+import ru.hogwarts.school_2.repository.StudentRepository;
+
+// Индекс имён студентов в памяти: триграммы для поиска подстроки и отсортированный словарь
+// для поиска по началу имени, оба без обращения к базе.
+// Для каждой тройки подряд идущих букв (в нижнем регистре) хранится множество id студентов,
+// в имени которых она встречается. Запрос пересекает множества своих триграмм, начиная
+// с самого короткого, и проверяет оставшихся кандидатов обычным contains.
+// Строится при старте, поддерживается событиями StudentChangedEvent после фиксации транзакций
+// и периодически перестраивается целиком (изменения с других экземпляров приложения и прямой SQL)
+@Component
+public class StudentNameIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StudentNameIndex.class);
+
+  private static final int GRAM = 3;
+
+  private final StudentRepository studentRepository;
+  private final TransactionTemplate readTransaction;
+
+  // Структуры индекса изменяемые (конкурентные коллекции): изменения применяются по одному
+  // под writeLock, поиск идёт без блокировок. При перестройке индекс подменяется целиком
+  private volatile Index index = new Index();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  // Пока идёт перестройка, события копятся здесь и применяются к новому индексу перед подменой;
+  // null — перестройки нет
+  private List<StudentChangedEvent> pendingEvents;
+  private boolean rebuildRequested;
+
+  public StudentNameIndex(StudentRepository studentRepository,
+      PlatformTransactionManager transactionManager) {
+    this.studentRepository = studentRepository;
+    // Перестройка запускается и из слушателей после фиксации, там нужна своя транзакция
+    this.readTransaction = new TransactionTemplate(transactionManager);
+    this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.readTransaction.setReadOnly(true);
+  }
+
+  // Студенты, в имени которых есть name (без учёта регистра), по возрастанию id
+  public List<StudentDTO> search(String name) {
+    String query = normalize(name);
+    Index current = index;
+
+    List<StudentDTO> result = new ArrayList<>();
+    if (query.length() < GRAM) {
+      // Коротким запросам триграммы не помогают, просматриваем имена в памяти
+      for (StudentDTO student : current.students.values()) {
+        if (normalize(student.getName()).contains(query)) {
+          result.add(student);
+        }
+      }
+    } else {
+      List<Set<Long>> postings = new ArrayList<>();
+      for (String gram : grams(query)) {
+        Set<Long> ids = current.postings.get(gram);
+        if (ids == null) {
+          return result;
+        }
+        postings.add(ids);
+      }
+      postings.sort(Comparator.comparingInt(Set::size));
+
+      for (Long id : postings.get(0)) {
+        StudentDTO student = current.students.get(id);
+        if (student != null && containsAll(postings, id)
+            && normalize(student.getName()).contains(query)) {
+          result.add(student);
+        }
+      }
+    }
+    result.sort(Comparator.comparing(StudentDTO::getId));
+    return result;
+  }
+
+  // Имена (в верхнем регистре), начинающиеся с prefix, в алфавитном порядке.
+  // Читается только нужный диапазон отсортированного словаря имён, а не все студенты
+  public List<String> namesStartingWith(String prefix, int offset, int limit) {
+    String from = prefix.toUpperCase(Locale.ROOT);
+    NavigableMap<String, Integer> range =
+        index.sortedNames.subMap(from, true, from + Character.MAX_VALUE, false);
+
+    List<String> result = new ArrayList<>(Math.min(limit, 1024));
+    int skipped = 0;
+    for (Map.Entry<String, Integer> entry : range.entrySet()) {
+      // Одинаковые имена хранятся одним ключом со счётчиком
+      for (int i = 0; i < entry.getValue() && result.size() < limit; i++) {
+        if (skipped < offset) {
+          skipped++;
+        } else {
+          result.add(entry.getKey());
+        }
+      }
+      if (result.size() >= limit) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  public int size() {
+    return index.students.size();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onStudentChanged(StudentChangedEvent event) {
+    writeLock.lock();
+    try {
+      index.apply(event);
+      if (pendingEvents != null) {
+        pendingEvents.add(event);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onStudentsReload(StudentsReloadEvent event) {
+    LOGGER.debug("Rebuilding student name index: {}", event.reason());
+    rebuild();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    rebuild();
+  }
+
+  // Новый индекс собирается из курсора по всем студентам без блокировки: поиск работает
+  // по старому индексу, изменения применяются к нему и запоминаются. Под блокировкой
+  // к новому индексу применяются запомненные изменения, и он подменяет старый.
+  // Запрос перестройки во время перестройки выполняется сразу после неё
+  @Scheduled(initialDelayString = "${students.name-index.rebuild-interval-ms:600000}",
+      fixedDelayString = "${students.name-index.rebuild-interval-ms:600000}")
+  public void rebuild() {
+    writeLock.lock();
+    try {
+      if (pendingEvents != null) {
+        rebuildRequested = true;
+        return;
+      }
+      pendingEvents = new ArrayList<>();
+    } finally {
+      writeLock.unlock();
+    }
+
+    boolean again;
+    do {
+      Index rebuilt = new Index();
+      try {
+        readTransaction.executeWithoutResult(status -> {
+          try (Stream<StudentDTO> students = studentRepository.streamAllDto()) {
+            students.forEach(rebuilt::put);
+          }
+        });
+      } catch (RuntimeException e) {
+        writeLock.lock();
+        try {
+          pendingEvents = null;
+          rebuildRequested = false;
+        } finally {
+          writeLock.unlock();
+        }
+        throw e;
+      }
+
+      writeLock.lock();
+      try {
+        pendingEvents.forEach(rebuilt::apply);
+        index = rebuilt;
+        again = rebuildRequested;
+        rebuildRequested = false;
+        pendingEvents = again ? new ArrayList<>() : null;
+      } finally {
+        writeLock.unlock();
+      }
+      LOGGER.info("Student name index rebuilt: {} students, {} trigrams",
+          rebuilt.students.size(), rebuilt.postings.size());
+    } while (again);
+  }
+
+  private static boolean containsAll(List<Set<Long>> postings, Long id) {
+    for (int i = 1; i < postings.size(); i++) {
+      if (!postings.get(i).contains(id)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String normalize(String name) {
+    return name == null ? "" : name.toLowerCase(Locale.ROOT);
+  }
+
+  private static Set<String> grams(String normalized) {
+    Set<String> grams = new HashSet<>();
+    for (int i = 0; i + GRAM <= normalized.length(); i++) {
+      grams.add(normalized.substring(i, i + GRAM));
+    }
+    return grams;
+  }
+
+  private static final class Index {
+
+    private final Map<Long, StudentDTO> students = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    private final NavigableMap<String, Integer> sortedNames = new ConcurrentSkipListMap<>();
+
+    private void apply(StudentChangedEvent event) {
+      if (event.after() != null) {
+        put(event.after());
+      } else {
+        remove(event.studentId());
+      }
+    }
+
+    // Сначала добавляются триграммы и имя нового значения, затем подменяется сам студент,
+    // и только потом убирается то, что осталось от старого имени. Поиск, идущий в это время,
+    // находит студента по старому или по новому имени, но не теряет его
+    private void put(StudentDTO student) {
+      Set<String> newGrams = grams(normalize(student.getName()));
+      for (String gram : newGrams) {
+        postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(student.getId());
+      }
+      if (student.getName() != null && !student.getName().isEmpty()) {
+        sortedNames.merge(student.getName().toUpperCase(Locale.ROOT), 1, Integer::sum);
+      }
+
+      StudentDTO previous = students.put(student.getId(), student);
+      if (previous != null) {
+        removeName(previous.getName());
+        for (String gram : grams(normalize(previous.getName()))) {
+          if (!newGrams.contains(gram)) {
+            removePosting(gram, student.getId());
+          }
+        }
+      }
+    }
+
+    private void remove(Long id) {
+      StudentDTO removed = students.remove(id);
+      if (removed == null) {
+        return;
+      }
+      removeName(removed.getName());
+      for (String gram : grams(normalize(removed.getName()))) {
+        removePosting(gram, id);
+      }
+    }
+
+    private void removeName(String name) {
+      if (name != null && !name.isEmpty()) {
+        sortedNames.computeIfPresent(name.toUpperCase(Locale.ROOT),
+            (key, count) -> count > 1 ? count - 1 : null);
+      }
+    }
+
+    private void removePosting(String gram, Long id) {
+      postings.computeIfPresent(gram, (key, ids) -> {
+        ids.remove(id);
+        return ids.isEmpty() ? null : ids;
+      });
+    }
+  }
+
+}//class
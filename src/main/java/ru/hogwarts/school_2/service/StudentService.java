@@ -1,19 +1,58 @@
 package ru.hogwarts.school_2.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school_2.dto.StudentBatchDTO;
+import ru.hogwarts.school_2.dto.StudentBulkResultDTO;
 import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.dto.StudentRowErrorDTO;
+import ru.hogwarts.school_2.event.StudentChangedEvent;
 import ru.hogwarts.school_2.model.Faculty;
 import ru.hogwarts.school_2.model.Student;
+import ru.hogwarts.school_2.model.StudentTombstone;
 import ru.hogwarts.school_2.repository.AvatarRepository;
 import ru.hogwarts.school_2.repository.FacultyRepository;
 import ru.hogwarts.school_2.repository.StudentRepository;
+import ru.hogwarts.school_2.repository.StudentSpecifications;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,9 +61,33 @@ public class StudentService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(StudentService.class);
 
+  private static final Set<String> SORTABLE_FIELDS = Set.of("id", "name", "age", "gender");
+  private static final int NDJSON_FLUSH_ROWS = 500;
+  private static final int BULK_CHUNK_SIZE = 1000;
+
   private FacultyRepository facultyRepository;
+  private FacultyRegistry facultyRegistry;
   private StudentRepository studentRepository;
   private AvatarRepository avatarRepository;
+  private AvatarCache avatarCache;
+  private ObjectMapper objectMapper;
+  private Validator validator;
+  private StudentNameIndex studentNameIndex;
+  private StudentStatistics studentStatistics;
+  private ApplicationEventPublisher eventPublisher;
+  // Каждая порция удаления студентов факультета фиксируется своей транзакцией
+  private TransactionTemplate chunkTransaction;
+
+  @Value("${faculties.delete.chunk-size:500}")
+  private int deleteChunkSize;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  // Одновременные запросы одного студента по id идут в базу одним запросом.
+  // Загрузка по первичному ключу быстрая: дольше секунды её ждать не стоит
+  private final SingleFlight<Long, Optional<StudentDTO>> studentLoads =
+      new SingleFlight<>(Duration.ofSeconds(1));
 
   public StudentService() {
   }
@@ -33,10 +96,27 @@ public class StudentService {
   public StudentService(
       StudentRepository studentRepository,
       FacultyRepository facultyRepository,
-      AvatarRepository avatarRepository) {
+      AvatarRepository avatarRepository,
+      AvatarCache avatarCache,
+      ObjectMapper objectMapper,
+      Validator validator,
+      StudentNameIndex studentNameIndex,
+      StudentStatistics studentStatistics,
+      ApplicationEventPublisher eventPublisher,
+      FacultyRegistry facultyRegistry,
+      PlatformTransactionManager transactionManager) {
     this.studentRepository = studentRepository;
     this.facultyRepository = facultyRepository;
     this.avatarRepository = avatarRepository;
+    this.avatarCache = avatarCache;
+    this.objectMapper = objectMapper;
+    this.validator = validator;
+    this.studentNameIndex = studentNameIndex;
+    this.studentStatistics = studentStatistics;
+    this.eventPublisher = eventPublisher;
+    this.facultyRegistry = facultyRegistry;
+    this.chunkTransaction = new TransactionTemplate(transactionManager);
+    this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
   }
 
   @Transactional
@@ -48,20 +128,131 @@ public class StudentService {
       throw new IllegalStateException("Студент с таким именем уже существует!");
     }
 
-    Faculty faculty = facultyRepository.findById(facultyId)
-        .orElseThrow(() -> {
-          LOGGER.error("Faculty with ID {} not found", facultyId);
-          return new EntityNotFoundException("Факультет с ID " + facultyId + " не найден");
-        });
+    // Существование факультета проверяется по реестру в памяти, в базу запрос идёт,
+    // только если факультета в реестре нет (он мог появиться на другом экземпляре)
+    if (!facultyRegistry.existsByIdOrLoad(facultyId)) {
+      LOGGER.error("Faculty with ID {} not found", facultyId);
+      throw new EntityNotFoundException("Факультет с ID " + facultyId + " не найден");
+    }
 
     Student student = new Student(studentDTO.getName(), studentDTO.getAge(), studentDTO.getGender());
-    student.setFaculty(faculty);
+    student.setFaculty(facultyRepository.getReferenceById(facultyId));
 
     LOGGER.debug("Creating student: name={}, age={}, gender={}, facultyId={}",
         studentDTO.getName(), studentDTO.getAge(), studentDTO.getGender(), facultyId);
     return studentRepository.save(student);
   }
 
+  // Массовое добавление студентов. Факультеты и занятые имена проверяются одним запросом
+  // на весь список, вставки уходят JDBC-пакетами. Ошибочные строки не прерывают загрузку,
+  // а возвращаются в ответе. При upsert = true студенты с существующим именем обновляются
+  @Transactional
+  public StudentBulkResultDTO addStudents(List<StudentDTO> studentDTOs, boolean upsert) {
+    LOGGER.info("Was invoked method for bulk add of {} students, upsert={}",
+        studentDTOs.size(), upsert);
+
+    List<StudentRowErrorDTO> errors = new ArrayList<>();
+
+    Set<Long> facultyIds = studentDTOs.stream()
+        .map(StudentDTO::getFacultyId)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+    Map<Long, Faculty> faculties = facultyIds.stream()
+        .filter(facultyRegistry::existsByIdOrLoad)
+        .collect(Collectors.toMap(Function.identity(), facultyRepository::getReferenceById));
+
+    Map<String, Student> existing = findExistingByLowerName(studentDTOs.stream()
+        .map(StudentDTO::getName)
+        .filter(Objects::nonNull)
+        .map(name -> name.toLowerCase(Locale.ROOT))
+        .collect(Collectors.toSet()));
+
+    List<Student> toSave = new ArrayList<>();
+    Set<String> seenNames = new HashSet<>();
+    int created = 0;
+    int updated = 0;
+
+    for (int i = 0; i < studentDTOs.size(); i++) {
+      StudentDTO dto = studentDTOs.get(i);
+      long row = i + 1;
+
+      String error = validateStudent(dto);
+      if (error == null && !faculties.containsKey(dto.getFacultyId())) {
+        error = "Факультет с ID " + dto.getFacultyId() + " не найден";
+      }
+      if (error == null && !seenNames.add(dto.getName().toLowerCase(Locale.ROOT))) {
+        error = "Имя повторяется в загружаемом списке";
+      }
+      Student student = error == null ? existing.get(dto.getName().toLowerCase(Locale.ROOT)) : null;
+      if (student != null && !upsert) {
+        error = "Студент с таким именем уже существует!";
+      }
+      if (error != null) {
+        errors.add(new StudentRowErrorDTO(row, dto.getName(), error));
+        continue;
+      }
+
+      if (student == null) {
+        student = new Student(dto.getName(), dto.getAge(), dto.getGender());
+        created++;
+      } else {
+        student.setAge(dto.getAge());
+        // Пол хранится в верхнем регистре, как его записывает конструктор Student
+        student.setGender(dto.getGender().toUpperCase(Locale.ROOT));
+        updated++;
+      }
+      student.setFaculty(faculties.get(dto.getFacultyId()));
+      toSave.add(student);
+    }
+
+    // Сбрасываем изменения порциями и отсоединяем только новых студентов, чтобы контекст
+    // Hibernate не рос на весь список. Обновляемые студенты загружены заранее и должны
+    // остаться в контексте: отсоединённый save превратил бы в merge с SELECT на каждого
+    for (int from = 0; from < toSave.size(); from += BULK_CHUNK_SIZE) {
+      List<Student> chunk = toSave.subList(from, Math.min(from + BULK_CHUNK_SIZE, toSave.size()));
+      List<Student> inserted = chunk.stream()
+          .filter(student -> student.getId() == null)
+          .toList();
+      studentRepository.saveAll(chunk);
+      studentRepository.flush();
+      inserted.forEach(entityManager::detach);
+    }
+
+    LOGGER.debug("Bulk add finished: created={}, updated={}, rejected={}",
+        created, updated, errors.size());
+    return new StudentBulkResultDTO(created, updated, errors);
+  }
+
+  // Те же правила, что и для одиночного добавления (аннотации StudentDTO) плюс обязательный факультет.
+  // null означает, что строка корректна
+  public String validateStudent(StudentDTO studentDTO) {
+    Set<ConstraintViolation<StudentDTO>> violations = validator.validate(studentDTO);
+    if (!violations.isEmpty()) {
+      return violations.iterator().next().getMessage();
+    }
+    // @Pattern пропускает null, а без пола студента не создать
+    if (studentDTO.getGender() == null) {
+      return "Не указан пол";
+    }
+    if (studentDTO.getFacultyId() == null) {
+      return "Не указан факультет";
+    }
+    return null;
+  }
+
+  private Map<String, Student> findExistingByLowerName(Set<String> lowerNames) {
+    Map<String, Student> existing = new HashMap<>();
+    List<String> names = new ArrayList<>(lowerNames);
+    // IN-список режем на части, у драйвера ограничено число параметров запроса
+    for (int from = 0; from < names.size(); from += BULK_CHUNK_SIZE) {
+      List<String> chunk = names.subList(from, Math.min(from + BULK_CHUNK_SIZE, names.size()));
+      for (Student student : studentRepository.findAllByLowerNameIn(chunk)) {
+        existing.putIfAbsent(student.getName().toLowerCase(Locale.ROOT), student);
+      }
+    }
+    return existing;
+  }
+
   @Transactional
   public Student updateStudent(Long id, StudentDTO studentDTO) throws NotFoundException {
     LOGGER.info("Was invoked method for update student with id: {}", id);
@@ -80,12 +271,11 @@ public class StudentService {
     student.setGender(studentDTO.getGender());
 
     if (studentDTO.getFacultyId() != null) {
-      Faculty faculty = facultyRepository.findById(studentDTO.getFacultyId())
-          .orElseThrow(() -> {
-            LOGGER.error("Faculty with ID {} not found during student update", studentDTO.getFacultyId());
-            return new NotFoundException();
-          });
-      student.setFaculty(faculty);
+      if (!facultyRegistry.existsByIdOrLoad(studentDTO.getFacultyId())) {
+        LOGGER.error("Faculty with ID {} not found during student update", studentDTO.getFacultyId());
+        throw new NotFoundException();
+      }
+      student.setFaculty(facultyRepository.getReferenceById(studentDTO.getFacultyId()));
     }
 
     return studentRepository.save(student);
@@ -94,15 +284,71 @@ public class StudentService {
   public List<StudentDTO> getAllStudents() {
     LOGGER.info("Was invoked method for get all students");
     LOGGER.debug("Fetching all students from database");
-    return studentRepository.findAll().stream()
-        .map(student -> new StudentDTO(
-            student.getId(),
-            student.getName(),
-            student.getAge(),
-            student.getGender(),
-            student.getFaculty() != null ? student.getFaculty().getId() : null
-        ))
-        .collect(Collectors.toList());
+    return studentRepository.findAllDto(Pageable.unpaged(Sort.by("id"))).getContent();
+  }
+
+  public Page<StudentDTO> getStudentsPage(Pageable pageable) {
+    LOGGER.info("Was invoked method for get students page: {}", pageable);
+
+    checkSortFields(pageable);
+
+    Page<StudentDTO> page = studentRepository.findAllDto(pageable);
+    LOGGER.debug("Found {} students on page {} of {}",
+        page.getNumberOfElements(), page.getNumber(), page.getTotalPages());
+    return page;
+  }
+
+  // Поиск по любому сочетанию условий одним SQL-запросом с постраничной выдачей
+  // (проекция в DTO, без загрузки сущностей). Незаданные условия в запрос не попадают
+  public Page<StudentDTO> searchStudents(String name, String gender, Integer minAge,
+      Integer maxAge, Long facultyId, Pageable pageable) {
+    LOGGER.info("Was invoked method for search students: name={}, gender={}, age={}-{}, "
+        + "facultyId={}, {}", name, gender, minAge, maxAge, facultyId, pageable);
+    checkSortFields(pageable);
+
+    Specification<Student> specification = Specification
+        .where(StudentSpecifications.nameContains(name))
+        .and(StudentSpecifications.hasGender(gender))
+        .and(StudentSpecifications.ageFrom(minAge))
+        .and(StudentSpecifications.ageTo(maxAge))
+        .and(StudentSpecifications.inFaculty(facultyId));
+
+    Page<StudentDTO> page = studentRepository.searchDto(specification, pageable);
+    LOGGER.debug("Found {} students on page {} of {}",
+        page.getNumberOfElements(), page.getNumber(), page.getTotalPages());
+    return page;
+  }
+
+  private void checkSortFields(Pageable pageable) {
+    for (Sort.Order order : pageable.getSort()) {
+      if (!SORTABLE_FIELDS.contains(order.getProperty())) {
+        LOGGER.warn("Unsupported sort field: {}", order.getProperty());
+        throw new IllegalArgumentException(
+            "Сортировка возможна только по полям: " + String.join(", ", SORTABLE_FIELDS));
+      }
+    }
+  }
+
+  // Пишет всех студентов в поток по одному JSON-объекту на строку (NDJSON).
+  // Строки читаются из базы курсором и сразу уходят в ответ, список в памяти не копится
+  @Transactional(readOnly = true)
+  public void writeAllStudentsAsNdjson(OutputStream outputStream) throws IOException {
+    LOGGER.info("Was invoked method for stream all students as NDJSON");
+
+    long count = 0;
+    try (Stream<StudentDTO> students = studentRepository.streamAllDto();
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      Iterator<StudentDTO> iterator = students.iterator();
+      while (iterator.hasNext()) {
+        generator.writeObject(iterator.next());
+        generator.writeRaw('\n');
+        if (++count % NDJSON_FLUSH_ROWS == 0) {
+          generator.flush();
+        }
+      }
+    }
+    LOGGER.debug("Streamed {} students", count);
   }
 
   public Optional<Student> getStudentById(Long id) {
@@ -114,10 +360,50 @@ public class StudentService {
     return student;
   }
 
-  public List<Student> findByNameContainingIgnoreCase(String name) {
+  // Для чтения через REST: одновременные запросы одного и того же id склеиваются в один
+  // запрос к базе, ожидающие потоки получают тот же DTO
+  public Optional<StudentDTO> findStudentDtoById(Long id) {
+    LOGGER.info("Was invoked method for find student dto by id: {}", id);
+    Optional<StudentDTO> student = studentLoads.load(id,
+        key -> studentRepository.findById(key).map(StudentDTO::fromStudent));
+    if (student.isEmpty()) {
+      LOGGER.warn("Student with ID {} not found", id);
+    }
+    return student;
+  }
+
+  // Студенты по списку id: один IN-запрос на каждую 1000 id вместо запроса на каждого.
+  // Порядок ответа — порядок id в запросе (повторы убираются), ненайденные id перечисляются отдельно
+  public StudentBatchDTO findStudentsByIds(List<Long> ids) {
+    LOGGER.info("Was invoked method for find students by {} ids", ids.size());
+
+    List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+    Map<Long, StudentDTO> found = new HashMap<>();
+    for (int from = 0; from < distinctIds.size(); from += BULK_CHUNK_SIZE) {
+      List<Long> chunk = distinctIds.subList(from, Math.min(from + BULK_CHUNK_SIZE, distinctIds.size()));
+      studentRepository.findAllDtoByIdIn(chunk).forEach(student -> found.put(student.getId(), student));
+    }
+
+    List<StudentDTO> students = new ArrayList<>(found.size());
+    List<Long> missingIds = new ArrayList<>();
+    for (Long id : distinctIds) {
+      StudentDTO student = found.get(id);
+      if (student != null) {
+        students.add(student);
+      } else {
+        missingIds.add(id);
+      }
+    }
+    LOGGER.debug("Found {} students, missing {} ids", students.size(), missingIds.size());
+    return new StudentBatchDTO(students, missingIds);
+  }
+
+  // Поиск по подстроке идёт по индексу триграмм в памяти: LIKE '%x%' в базе — полный просмотр таблицы
+  public List<StudentDTO> findByNameContainingIgnoreCase(String name) {
     LOGGER.info("Was invoked method for find students by name containing: {}", name);
-    LOGGER.debug("Searching students with name containing: {}", name);
-    return studentRepository.findByNameContainingIgnoreCase(name);
+    List<StudentDTO> students = studentNameIndex.search(name);
+    LOGGER.debug("Found {} students with name containing: {}", students.size(), name);
+    return students;
   }
 
   public List<Student> findByGender(String gender) {
@@ -140,7 +426,7 @@ public class StudentService {
 
   public long getCountStudents(Long facultyId) {
     LOGGER.info("Was invoked method for get count of students by faculty id: {}", facultyId);
-    long count = studentRepository.countByFaculty_Id(facultyId);
+    long count = studentStatistics.getCount(facultyId);
     LOGGER.debug("Found {} students for faculty with ID {}", count, facultyId);
     return count;
   }
@@ -166,48 +452,94 @@ public class StudentService {
 
     LOGGER.debug("Deleting student with ID: {}", id);
     studentRepository.deleteById(id);
+    writeTombstones(List.of(id));
 
+    invalidateAvatarsAfterCommit(List.of(id));
     return true;
   }
 
   public Optional<Faculty> getFacultyById(Long facultyId) {
     LOGGER.info("Was invoked method for get faculty by id: {}", facultyId);
-    Optional<Faculty> faculty = facultyRepository.findById(facultyId);
+    Optional<Faculty> faculty = facultyRegistry.findByIdOrLoad(facultyId);
     if (faculty.isEmpty()) {
       LOGGER.warn("Faculty with ID {} not found", facultyId);
     }
     return faculty;
   }
 
-  @Transactional
+  // Удаление порциями по faculties.delete.chunk-size студентов: в каждой порции аватары
+  // и студенты удаляются двумя запросами по списку id, и порция фиксируется своей транзакцией,
+  // чтобы блокировки не держались на всё время удаления большого факультета.
+  // Файлы картинок здесь не трогаем: оставшиеся без ссылок картинки убирает AvatarBlobCollector.
+  // Вызывать вне транзакции: внешняя держала бы своё соединение всё время удаления,
+  // а каждая порция брала бы из пула второе
   public void deleteAllStudentsFromFaculty(Long facultyId) {
     LOGGER.info("Was invoked method for delete all students from faculty with id: {}", facultyId);
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      LOGGER.warn("Students of faculty {} are deleted inside an outer transaction", facultyId);
+    }
 
-    List<Student> students = studentRepository.findAllByFaculty_Id(facultyId);
-    if (students.isEmpty()) {
+    int deleted = 0;
+    int chunk;
+    do {
+      chunk = chunkTransaction.execute(status -> deleteStudentChunk(facultyId));
+      deleted += chunk;
+    } while (chunk == deleteChunkSize);
+
+    if (deleted == 0) {
       LOGGER.warn("No students found for faculty with ID: {}", facultyId);
-      return;
+    } else {
+      LOGGER.debug("Deleted {} students from faculty with ID: {}", deleted, facultyId);
     }
+  }
 
-    LOGGER.debug("Deleting avatars for {} students from faculty with ID: {}", students.size(), facultyId);
-    for (Student student : students) {
-      avatarRepository.deleteByStudentId(student.getId());
+  private int deleteStudentChunk(Long facultyId) {
+    List<StudentDTO> students =
+        studentRepository.findDtoByFacultyId(facultyId, PageRequest.ofSize(deleteChunkSize));
+    if (students.isEmpty()) {
+      return 0;
     }
+    List<Long> ids = students.stream().map(StudentDTO::getId).toList();
+
+    LOGGER.debug("Deleting {} students with avatars from faculty with ID: {}",
+        ids.size(), facultyId);
+    avatarRepository.deleteAllByStudentIdIn(ids);
+    studentRepository.deleteAllByIdIn(ids);
+    writeTombstones(ids);
+    // JPQL DELETE идёт в обход слушателей сущности, сообщаем об удалении сами
+    students.forEach(student ->
+        eventPublisher.publishEvent(new StudentChangedEvent(student, null)));
+
+    invalidateAvatarsAfterCommit(ids);
+    return students.size();
+  }
+
+  // Отметки об удалении для /students/changes пишутся в той же транзакции, что и удаление
+  private void writeTombstones(List<Long> studentIds) {
+    Instant deletedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+    studentIds.forEach(id -> entityManager.persist(new StudentTombstone(id, deletedAt)));
+  }
 
-    LOGGER.debug("Deleting all students from faculty with ID: {}", facultyId);
-    studentRepository.deleteAllByFaculty_Id(facultyId);
+  // Кэш картинок чистим только после фиксации удаления
+  private void invalidateAvatarsAfterCommit(List<Long> studentIds) {
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        studentIds.forEach(avatarCache::invalidate);
+      }
+    });
   }
 
   public long getCountByAllStudens() {
     LOGGER.info("Was invoked method for get count of all students");
-    long count = studentRepository.getCountByAllStudens();
+    long count = studentStatistics.getCount();
     LOGGER.debug("Total students count: {}", count);
     return count;
   }
 
   public Double findAverageAge() {
     LOGGER.info("Was invoked method for find average age of students");
-    Double averageAge = studentRepository.findAverageAge();
+    Double averageAge = studentStatistics.getAverageAge();
     LOGGER.debug("Average age of students: {}", averageAge);
     return averageAge;
   }
@@ -0,0 +1,189 @@
+package ru.hogwarts.school_2.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.event.StudentChangedEvent;
+import ru.hogwarts.school_2.event.StudentsReloadEvent;
+import ru.hogwarts.school_2.repository.StudentRepository;
+
+// Количество студентов и сумма возрастов — по школе и по каждому факультету.
+// Меняются по StudentChangedEvent после фиксации транзакции, поэтому средний возраст
+// и количества читаются из памяти без запросов. Периодически сверяются с базой
+// (изменения с других экземпляров приложения и прямой SQL), расхождение пишется в лог
+@Component
+public class StudentStatistics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StudentStatistics.class);
+
+  private final StudentRepository studentRepository;
+
+  private volatile Totals school = Totals.EMPTY;
+  private volatile Map<Long, Totals> faculties = new ConcurrentHashMap<>();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private boolean reconciled;
+  // Пока идёт сверка, события копятся здесь и применяются к загруженным итогам перед подменой;
+  // null — сверки нет
+  private List<StudentChangedEvent> pendingEvents;
+  private boolean reconcileRequested;
+
+  public StudentStatistics(StudentRepository studentRepository) {
+    this.studentRepository = studentRepository;
+  }
+
+  public long getCount() {
+    return school.count();
+  }
+
+  public long getCount(Long facultyId) {
+    return faculties.getOrDefault(facultyId, Totals.EMPTY).count();
+  }
+
+  // null, если студентов нет (как AVG в SQL)
+  public Double getAverageAge() {
+    return school.averageAge();
+  }
+
+  public Double getAverageAge(Long facultyId) {
+    return faculties.getOrDefault(facultyId, Totals.EMPTY).averageAge();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onStudentChanged(StudentChangedEvent event) {
+    writeLock.lock();
+    try {
+      school = apply(event, school, faculties);
+      if (pendingEvents != null) {
+        pendingEvents.add(event);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onStudentsReload(StudentsReloadEvent event) {
+    LOGGER.debug("Reconciling student statistics: {}", event.reason());
+    reconcile();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    reconcile();
+  }
+
+  // Итоги пересчитываются одним GROUP BY без блокировки: чтение идёт по старым итогам,
+  // события применяются к ним и запоминаются. Под блокировкой запомненные события
+  // применяются к загруженным итогам, и те подменяют старые. Событие, чья транзакция
+  // зафиксирована до начала запроса, а слушатель сработал уже во время него, учтётся
+  // дважды — такое расхождение исправит следующая сверка.
+  // Запрос сверки во время сверки выполняется сразу после неё
+  @Scheduled(initialDelayString = "${students.stats.reconcile-interval-ms:300000}",
+      fixedDelayString = "${students.stats.reconcile-interval-ms:300000}")
+  public void reconcile() {
+    writeLock.lock();
+    try {
+      if (pendingEvents != null) {
+        reconcileRequested = true;
+        return;
+      }
+      pendingEvents = new ArrayList<>();
+    } finally {
+      writeLock.unlock();
+    }
+
+    boolean again;
+    do {
+      Map<Long, Totals> loaded = new ConcurrentHashMap<>();
+      Totals total = Totals.EMPTY;
+      try {
+        for (Object[] row : studentRepository.sumAgesByFaculty()) {
+          Totals totals = new Totals(((Number) row[1]).longValue(), ((Number) row[2]).longValue());
+          if (row[0] != null) {
+            loaded.put(((Number) row[0]).longValue(), totals);
+          }
+          total = total.plus(totals.count(), totals.ageSum());
+        }
+      } catch (RuntimeException e) {
+        writeLock.lock();
+        try {
+          pendingEvents = null;
+          reconcileRequested = false;
+        } finally {
+          writeLock.unlock();
+        }
+        throw e;
+      }
+
+      writeLock.lock();
+      try {
+        for (StudentChangedEvent event : pendingEvents) {
+          total = apply(event, total, loaded);
+        }
+        if (reconciled && (!total.equals(school) || !loaded.equals(faculties))) {
+          LOGGER.warn("Student statistics drift: memory count={}, database count={}",
+              school.count(), total.count());
+        }
+        school = total;
+        faculties = loaded;
+        reconciled = true;
+        again = reconcileRequested;
+        reconcileRequested = false;
+        pendingEvents = again ? new ArrayList<>() : null;
+      } finally {
+        writeLock.unlock();
+      }
+      LOGGER.debug("Student statistics reconciled: {} students, {} faculties",
+          total.count(), loaded.size());
+    } while (again);
+  }
+
+  // Применяет событие к итогам факультетов на месте и возвращает новые итоги школы
+  private static Totals apply(StudentChangedEvent event, Totals school,
+      Map<Long, Totals> faculties) {
+    if (event.before() != null) {
+      school = apply(event.before(), -1, school, faculties);
+    }
+    if (event.after() != null) {
+      school = apply(event.after(), 1, school, faculties);
+    }
+    return school;
+  }
+
+  private static Totals apply(StudentDTO student, int sign, Totals school,
+      Map<Long, Totals> faculties) {
+    if (student.getFacultyId() != null) {
+      faculties.compute(student.getFacultyId(), (id, totals) -> {
+        Totals updated = Objects.requireNonNullElse(totals, Totals.EMPTY)
+            .plus(sign, (long) sign * student.getAge());
+        return updated.count() <= 0 ? null : updated;
+      });
+    }
+    return school.plus(sign, (long) sign * student.getAge());
+  }
+
+  private record Totals(long count, long ageSum) {
+
+    private static final Totals EMPTY = new Totals(0, 0);
+
+    private Totals plus(long countDelta, long ageDelta) {
+      return new Totals(count + countDelta, ageSum + ageDelta);
+    }
+
+    private Double averageAge() {
+      return count > 0 ? (double) ageSum / count : null;
+    }
+  }
+
+}//class
@@ -0,0 +1,111 @@
+--liquibase formatted sql
+--changeset alexeychudinov:avatars_1
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'avatar'
+
+-- Байты картинки живут в отдельной таблице, метаданные аватара их больше не содержат
+CREATE TABLE IF NOT EXISTS avatar_data
+(
+    avatar_id BIGINT PRIMARY KEY REFERENCES avatar (id) ON DELETE CASCADE,
+    data      OID NOT NULL
+);
+
+--changeset alexeychudinov:avatars_2
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.columns WHERE table_name = 'avatar' AND column_name = 'data'
+
+INSERT INTO avatar_data (avatar_id, data)
+SELECT id, data
+FROM avatar
+WHERE data IS NOT NULL
+ON CONFLICT (avatar_id) DO NOTHING;
+
+ALTER TABLE avatar DROP COLUMN data;
+
+--changeset alexeychudinov:avatars_3
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'avatar'
+
+ALTER TABLE avatar ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+--changeset alexeychudinov:avatars_4
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'avatar_data'
+
+-- Хранилище картинок по SHA-256 содержимого: одинаковые картинки хранятся один раз
+CREATE TABLE IF NOT EXISTS avatar_blob
+(
+    content_hash VARCHAR(64) PRIMARY KEY,
+    file_path    VARCHAR(255) NOT NULL,
+    file_size    BIGINT       NOT NULL,
+    media_type   VARCHAR(255) NOT NULL,
+    data         OID          NOT NULL
+);
+
+-- Для аватаров, загруженных до подсчёта хеша, считаем его по копии в базе
+UPDATE avatar a
+SET content_hash = encode(sha256(lo_get(d.data)), 'hex')
+FROM avatar_data d
+WHERE d.avatar_id = a.id
+  AND a.content_hash IS NULL;
+
+INSERT INTO avatar_blob (content_hash, file_path, file_size, media_type, data)
+SELECT DISTINCT ON (a.content_hash) a.content_hash, a.file_path, a.file_size, a.media_type, d.data
+FROM avatar a
+         JOIN avatar_data d ON d.avatar_id = a.id
+ORDER BY a.content_hash, a.id
+ON CONFLICT (content_hash) DO NOTHING;
+
+-- Дубликаты больших объектов больше не нужны
+SELECT lo_unlink(d.data)
+FROM avatar_data d
+WHERE NOT EXISTS (SELECT 1 FROM avatar_blob b WHERE b.data = d.data);
+
+DROP TABLE avatar_data;
+
+ALTER TABLE avatar
+    ADD CONSTRAINT avatar_content_hash_fk FOREIGN KEY (content_hash) REFERENCES avatar_blob (content_hash);
+
+--changeset alexeychudinov:avatars_5
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM pg_available_extensions WHERE name = 'lo'
+
+-- Удаление записи avatar_blob освобождает и большой объект с содержимым
+CREATE EXTENSION IF NOT EXISTS lo;
+CREATE TRIGGER avatar_blob_data_lo_manage
+    BEFORE UPDATE OR DELETE
+    ON avatar_blob
+    FOR EACH ROW
+EXECUTE FUNCTION lo_manage(data);
+
+--changeset alexeychudinov:avatars_6
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'avatar'
+
+-- У студента не больше одного аватара (OneToOne в Avatar); индекс обслуживает и поиск
+-- аватара по студенту, и удаление аватаров студентов по списку id.
+-- Если в таблице уже есть повторы, миграция остановится с ошибкой — их нужно убрать вручную
+CREATE UNIQUE INDEX IF NOT EXISTS avatar_student_id_uidx ON avatar (student_id);
+
+--changeset alexeychudinov:avatars_7
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'avatar'
+
+-- Число ссылок на картинку (countByBlob_ContentHash) и поиск картинок без ссылок
+-- в AvatarBlobCollector идут по avatar.content_hash
+CREATE INDEX IF NOT EXISTS avatar_content_hash_idx ON avatar (content_hash);
+
+--changeset alexeychudinov:avatars_8
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'avatar_blob'
+
+-- Большие объекты освобождает AvatarBlobCollector (lo_unlink перед удалением записи):
+-- триггер avatars_5 создаётся только при наличии расширения lo, без него объекты оставались.
+-- Триггер убираем, чтобы объект не освобождался дважды
+DROP TRIGGER IF EXISTS avatar_blob_data_lo_manage ON avatar_blob;
+
+-- Объекты, оставшиеся от записей, удалённых без триггера (как vacuumlo).
+-- Большие объекты в этой базе хранит только avatar_blob.data
+SELECT lo_unlink(m.oid)
+FROM pg_largeobject_metadata m
+WHERE NOT EXISTS (SELECT 1 FROM avatar_blob b WHERE b.data = m.oid);
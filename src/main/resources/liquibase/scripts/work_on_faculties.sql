@@ -3,4 +3,31 @@
 --preconditions onFail:MARK_RAN onError:HALT
 --precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'faculty'
 
-CREATE INDEX IF NOT EXISTS get_faculty_name_color_idx ON faculty (name, color);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS get_faculty_name_color_idx ON faculty (name, color);
+
+--changeset alexeychudinov:faculties_2
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'faculty'
+
+-- Время изменения для /faculty/changes
+ALTER TABLE faculty ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE;
+UPDATE faculty SET updated_at = now() WHERE updated_at IS NULL;
+ALTER TABLE faculty ALTER COLUMN updated_at SET DEFAULT now();
+ALTER TABLE faculty ALTER COLUMN updated_at SET NOT NULL;
+CREATE INDEX IF NOT EXISTS faculty_updated_at_idx ON faculty (updated_at);
+
+--changeset alexeychudinov:faculties_3
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'faculty'
+
+-- findByNameIgnoreCase / findByColorIgnoreCase сравнивают upper(...)
+CREATE INDEX IF NOT EXISTS faculty_upper_name_idx ON faculty (upper(name));
+CREATE INDEX IF NOT EXISTS faculty_upper_color_idx ON faculty (upper(color));
+
+--changeset alexeychudinov:faculties_4
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'faculty'
+
+-- Выдачи изменений по факультетам нет, время изменения никто не читает
+DROP INDEX IF EXISTS faculty_updated_at_idx;
+ALTER TABLE faculty DROP COLUMN IF EXISTS updated_at;
@@ -1,3 +1,72 @@
 --liquibase formatted sql
 --changeset alexeychudinov:student_1
-CREATE INDEX IF NOT EXISTS get_name_student_idx ON student (name);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS get_name_student_idx ON student (name);
+
+--changeset alexeychudinov:student_2
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'student'
+
+-- Hibernate берёт id диапазонами по 50 (pooled-lo), шаг последовательности должен совпадать
+CREATE SEQUENCE IF NOT EXISTS student_id_seq;
+ALTER SEQUENCE student_id_seq INCREMENT BY 50;
+SELECT setval('student_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM student), false);
+
+--changeset alexeychudinov:student_3
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'student'
+
+-- Индексы под /students/search: факультет + пол + возраст в разных сочетаниях.
+-- Пол хранится в обоих регистрах, поиск сравнивает upper(gender)
+CREATE INDEX IF NOT EXISTS student_faculty_gender_age_idx ON student (faculty_id, upper(gender), age);
+CREATE INDEX IF NOT EXISTS student_faculty_age_idx ON student (faculty_id, age);
+CREATE INDEX IF NOT EXISTS student_gender_age_idx ON student (upper(gender), age);
+CREATE INDEX IF NOT EXISTS student_age_idx ON student (age);
+
+--changeset alexeychudinov:student_4
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'student'
+
+-- Время изменения для /students/changes. Существующим строкам ставим время миграции,
+-- DEFAULT нужен для вставок прямым SQL (импорт CSV)
+ALTER TABLE student ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE;
+UPDATE student SET updated_at = now() WHERE updated_at IS NULL;
+ALTER TABLE student ALTER COLUMN updated_at SET DEFAULT now();
+ALTER TABLE student ALTER COLUMN updated_at SET NOT NULL;
+CREATE INDEX IF NOT EXISTS student_updated_at_idx ON student (updated_at, id);
+
+-- Отметки об удалённых студентах, их тоже отдаёт /students/changes
+CREATE TABLE IF NOT EXISTS student_tombstone (
+    student_id BIGINT PRIMARY KEY,
+    deleted_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+CREATE INDEX IF NOT EXISTS student_tombstone_deleted_at_idx ON student_tombstone (deleted_at, student_id);
+
+--changeset alexeychudinov:student_5
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'student'
+
+-- Поиск имени без учёта регистра: производные запросы ...IgnoreCase сравнивают upper(name),
+-- собственные запросы (массовая загрузка, импорт CSV) — lower(name). Индекс по name им не подходит
+CREATE INDEX IF NOT EXISTS student_upper_name_idx ON student (upper(name));
+CREATE INDEX IF NOT EXISTS student_lower_name_idx ON student (lower(name));
+
+-- Студенты факультета по порядку id: удаление факультета порциями, списки студентов в /faculty/overview.
+-- Заодно обслуживает внешний ключ faculty_id (student_faculty_age_idx не даёт порядка по id)
+CREATE INDEX IF NOT EXISTS student_faculty_id_idx ON student (faculty_id, id);
+
+--changeset alexeychudinov:student_6
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM pg_available_extensions WHERE name = 'pg_trgm'
+
+-- Поиск по части имени (/students/search?name=...) идёт через lower(name) LIKE '%...%',
+-- такой LIKE может использовать только триграммный индекс
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS student_name_trgm_idx ON student USING gin (lower(name) gin_trgm_ops);
+
+--changeset alexeychudinov:student_7
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:1 SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'student'
+
+-- Все запросы по имени без учёта регистра сравнивают lower(name) (findByNameIgnoreCase
+-- переведён на явный запрос), индекс по upper(name) больше никто не использует
+DROP INDEX IF EXISTS student_upper_name_idx;
@@ -0,0 +1,488 @@
+package ru.hogwarts.school_2;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.query.Param;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school_2.repository.AvatarRepository;
+import ru.hogwarts.school_2.repository.FacultyRepository;
+import ru.hogwarts.school_2.repository.StudentRepository;
+import ru.hogwarts.school_2.repository.StudentSpecifications;
+
+// Проверка планов запросов: каждый метод StudentRepository, FacultyRepository и AvatarRepository
+// вызывается на локальной PostgreSQL с данными, и для каждого его SQL снимается
+// EXPLAIN (FORMAT JSON) с теми же параметрами. Тест падает, если план читает последовательно
+// таблицу больше queryPlans.maxSeqScanRows строк или стоит дороже queryPlans.maxCost.
+// Методы, которые читают всю таблицу намеренно, перечислены в FULL_SCAN_ALLOWED с причиной.
+// Для запросов, ради которых заводились индексы, EXPECTED_INDEXES задаёт индекс,
+// который обязан появиться в плане.
+// Запускается задачей queryPlanTest (build.gradle), без queryPlans.url пропускается
+@SpringBootTest
+@ActiveProfiles("query-plans")
+@Tag("query-plans")
+@EnabledIfSystemProperty(named = "queryPlans.url", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanRegressionTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryPlanRegressionTest.class);
+
+  private static final String SEED_PREFIX = "plan-seed-";
+  private static final int SEED_FACULTIES = 20;
+  // Аватар у каждого AVATAR_EVERY-го студента
+  private static final int AVATAR_EVERY = 10;
+  private static final int PAGE_SIZE = 20;
+  private static final int ID_LIST_SIZE = 100;
+
+  private static final List<Class<?>> REPOSITORIES =
+      List.of(StudentRepository.class, FacultyRepository.class, AvatarRepository.class);
+
+  // Методы, которым последовательное чтение нужно по смыслу (проверки для них не действуют)
+  private static final Map<String, String> FULL_SCAN_ALLOWED = Map.of(
+      "StudentRepository.findAllDto", "COUNT всех студентов для Page",
+      "StudentRepository.streamAllDto", "выгрузка всех студентов",
+      "StudentRepository.sumAgesByFaculty", "итоги по всем студентам",
+      "StudentRepository.findAverageAge", "итог по всем студентам",
+      "StudentRepository.getCountByAllStudens", "итог по всем студентам",
+      "StudentRepository.findByAge", "условие выбирает большую долю таблицы",
+      "StudentRepository.findByAgeBetween", "условие выбирает большую долю таблицы",
+      "StudentRepository.findByGenderIgnoreCase", "условие выбирает большую долю таблицы",
+      "FacultyRepository.findOverviewRows", "итоги по всем студентам");
+
+  // Индексы из миграций и запросы, которые должны их использовать. Индексы faculty здесь
+  // не проверяются: в таблице несколько строк, и планировщик справедливо читает её целиком
+  private static final Map<String, String> EXPECTED_INDEXES = Map.of(
+      "StudentRepository.findByNameIgnoreCase", "student_lower_name_idx",
+      "StudentRepository.findAllByLowerNameIn", "student_lower_name_idx",
+      "StudentRepository.findDtoByFacultyId", "student_faculty_id_idx",
+      "StudentRepository.findRosterPageOfEachFaculty", "student_faculty_id_idx",
+      "StudentRepository.findChangedAfter", "student_updated_at_idx",
+      "AvatarRepository.findByStudentId", "avatar_student_id_uidx",
+      "AvatarRepository.existsByStudentId", "avatar_student_id_uidx",
+      "AvatarRepository.deleteAllByStudentIdIn", "avatar_student_id_uidx",
+      "AvatarRepository.countByBlob_ContentHash", "avatar_content_hash_idx");
+  // Создаётся, только если в базе есть расширение pg_trgm (changeset student_6)
+  private static final String TRIGRAM_INDEX = "student_name_trgm_idx";
+
+  private static final ThreadLocal<List<CapturedPlan>> CAPTURE = new ThreadLocal<>();
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private StudentRepository studentRepository;
+
+  @Autowired
+  private FacultyRepository facultyRepository;
+
+  @Autowired
+  private AvatarRepository avatarRepository;
+
+  private final Map<String, Long> relationRows = new HashMap<>();
+
+  private long maxSeqScanRows;
+  private double maxCost;
+
+  private Long sampleStudentId;
+  private String sampleStudentName;
+  private List<Long> sampleStudentIds;
+  private Long sampleFacultyId;
+  private String sampleFacultyColor;
+  private Long sampleAvatarStudentId;
+
+  @TestConfiguration
+  static class PlanCaptureConfig {
+
+    // Оборачивает DataSource: пока идёт запись (CAPTURE), перед каждым запросом
+    // на том же соединении выполняется EXPLAIN с теми же параметрами
+    @Bean
+    static BeanPostProcessor planCapturingDataSource() {
+      return new BeanPostProcessor() {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+          if (bean instanceof DataSource dataSource && !Proxy.isProxyClass(bean.getClass())) {
+            return proxy(DataSource.class, (proxy, method, args) -> {
+              Object result = invoke(method, dataSource, args);
+              return result instanceof Connection connection
+                  ? proxy(Connection.class, new ConnectionHandler(connection)) : result;
+            });
+          }
+          return bean;
+        }
+      };
+    }
+  }
+
+  @BeforeAll
+  void seed() {
+    maxSeqScanRows = Long.getLong("queryPlans.maxSeqScanRows", 10_000L);
+    maxCost = Double.parseDouble(System.getProperty("queryPlans.maxCost", "5000"));
+    int students = Integer.getInteger("queryPlans.seedStudents", 200_000);
+
+    jdbcTemplate.update("INSERT INTO faculty (name, color) "
+        + "SELECT '" + SEED_PREFIX + "faculty-' || g, '" + SEED_PREFIX + "color-' || (g % 5) "
+        + "FROM generate_series(1, ?) g WHERE NOT EXISTS "
+        + "(SELECT 1 FROM faculty f WHERE f.name = '" + SEED_PREFIX + "faculty-' || g)", SEED_FACULTIES);
+
+    long existing = jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM student WHERE name LIKE '" + SEED_PREFIX + "%'", Long.class);
+    if (existing < students) {
+      LOGGER.info("Seeding {} students for query plan checks", students - existing);
+      // Время изменения разнесено по секундам, как у настоящих правок
+      jdbcTemplate.update("INSERT INTO student (id, name, age, gender, faculty_id, updated_at) "
+          + "SELECT nextval('student_id_seq'), '" + SEED_PREFIX + "' || g, 11 + g % 7, "
+          + "CASE WHEN g % 2 = 0 THEN 'М' ELSE 'Ж' END, f.ids[1 + g % cardinality(f.ids)], "
+          + "now() - make_interval(secs => g) "
+          + "FROM generate_series(?, ?) g, (SELECT array_agg(id ORDER BY id) AS ids FROM faculty "
+          + "WHERE name LIKE '" + SEED_PREFIX + "%') f", existing + 1, (long) students);
+      jdbcTemplate.update("INSERT INTO avatar (file_path, file_size, media_type, student_id) "
+          + "SELECT '" + SEED_PREFIX + "' || s.id || '.png', 1024, 'image/png', s.id FROM student s "
+          + "WHERE s.name LIKE '" + SEED_PREFIX + "%' AND s.id % ? = 0 "
+          + "AND NOT EXISTS (SELECT 1 FROM avatar a WHERE a.student_id = s.id)", AVATAR_EVERY);
+    }
+    jdbcTemplate.execute("VACUUM ANALYZE faculty");
+    jdbcTemplate.execute("VACUUM ANALYZE student");
+    jdbcTemplate.execute("VACUUM ANALYZE avatar");
+
+    sampleStudentName = SEED_PREFIX + (students / 2 + 7);
+    sampleStudentId = jdbcTemplate.queryForObject(
+        "SELECT MIN(id) FROM student WHERE name = ?", Long.class, sampleStudentName);
+    sampleStudentIds = jdbcTemplate.queryForList(
+        "SELECT id FROM student WHERE id >= ? ORDER BY id LIMIT ?", Long.class,
+        sampleStudentId, ID_LIST_SIZE);
+    sampleFacultyId = jdbcTemplate.queryForObject(
+        "SELECT MIN(id) FROM faculty WHERE name LIKE '" + SEED_PREFIX + "%'", Long.class);
+    sampleFacultyColor = jdbcTemplate.queryForObject(
+        "SELECT color FROM faculty WHERE id = ?", String.class, sampleFacultyId);
+    sampleAvatarStudentId = jdbcTemplate.queryForObject(
+        "SELECT MIN(student_id) FROM avatar", Long.class);
+  }
+
+  @Test
+  void queryPlans_безПоследовательногоЧтенияБольшихТаблиц() {
+    Map<String, List<CapturedPlan>> plans = new TreeMap<>();
+
+    for (Class<?> repository : REPOSITORIES) {
+      Object bean = beanOf(repository);
+      Arrays.stream(repository.getDeclaredMethods())
+          .filter(method -> !method.isDefault() && !method.isSynthetic()
+              && !Modifier.isStatic(method.getModifiers()))
+          .sorted(Comparator.comparing(Method::getName))
+          .forEach(method -> {
+            Object[] args = Arrays.stream(method.getParameters())
+                .map(parameter -> argument(repository, method, parameter))
+                .toArray();
+            plans.put(repository.getSimpleName() + "." + method.getName(),
+                capture(() -> consume(invoke(method, bean, args))));
+          });
+    }
+
+    // Поиск /students/search объявлен в StudentSearchRepository, а не в
+    // StudentRepository — проверяем основные сочетания условий
+    String nameFragment = sampleStudentName.substring(SEED_PREFIX.length());
+    plans.put("StudentRepository.searchDto(name)", capture(() ->
+        studentRepository.searchDto(StudentSpecifications.nameContains(nameFragment),
+            PageRequest.of(0, PAGE_SIZE))));
+    plans.put("StudentRepository.searchDto(faculty, gender, age)", capture(() ->
+        studentRepository.searchDto(Specification
+            .where(StudentSpecifications.inFaculty(sampleFacultyId))
+            .and(StudentSpecifications.hasGender("ж"))
+            .and(StudentSpecifications.ageFrom(12))
+            .and(StudentSpecifications.ageTo(14)), PageRequest.of(0, PAGE_SIZE))));
+
+    List<String> violations = new ArrayList<>();
+    plans.forEach((name, captured) -> {
+      String methodName = name.contains("(") ? name.substring(0, name.indexOf('(')) : name;
+      String allowed = FULL_SCAN_ALLOWED.get(methodName);
+      for (CapturedPlan plan : captured) {
+        JsonNode root = plan.plan().get(0).get("Plan");
+        double cost = root.get("Total Cost").asDouble();
+        List<String> seqScans = new ArrayList<>();
+        collectSeqScans(root, seqScans);
+        LOGGER.info("{}: cost={}, seq scans={}{}\n  {}", name, cost, seqScans,
+            allowed != null ? " (allowed: " + allowed + ")" : "", plan.sql());
+
+        if (allowed != null) {
+          continue;
+        }
+        for (String relation : seqScans) {
+          long rows = relationRows(relation);
+          if (rows > maxSeqScanRows) {
+            violations.add(name + ": последовательное чтение " + relation + " (" + rows
+                + " строк) в запросе " + plan.sql());
+          }
+        }
+        if (cost > maxCost) {
+          violations.add(name + ": стоимость " + cost + " больше " + maxCost
+              + " в запросе " + plan.sql());
+        }
+      }
+    });
+
+    Map<String, String> expectedIndexes = new TreeMap<>(EXPECTED_INDEXES);
+    if (indexExists(TRIGRAM_INDEX)) {
+      expectedIndexes.put("StudentRepository.searchDto(name)", TRIGRAM_INDEX);
+    }
+    expectedIndexes.forEach((name, index) -> {
+      boolean used = plans.getOrDefault(name, List.of()).stream()
+          .anyMatch(plan -> usesIndex(plan.plan().get(0).get("Plan"), index));
+      if (!used) {
+        violations.add(name + ": план не использует индекс " + index);
+      }
+    });
+
+    assertTrue(violations.isEmpty(),
+        "Планы запросов не укладываются в ограничения:\n" + String.join("\n", violations));
+  }
+
+  // Вызов в транзакции, которая откатывается: изменяющие методы (удаления) базу не меняют
+  private List<CapturedPlan> capture(Runnable call) {
+    List<CapturedPlan> captured = new ArrayList<>();
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.executeWithoutResult(status -> {
+      status.setRollbackOnly();
+      CAPTURE.set(captured);
+      try {
+        call.run();
+      } finally {
+        CAPTURE.remove();
+      }
+    });
+    return captured;
+  }
+
+  private Object argument(Class<?> repository, Method method, Parameter parameter) {
+    Param param = parameter.getAnnotation(Param.class);
+    String name = (param != null ? param.value() : parameter.getName()).toLowerCase(Locale.ROOT);
+    Class<?> type = parameter.getType();
+
+    if (Pageable.class.isAssignableFrom(type)) {
+      return PageRequest.of(0, PAGE_SIZE);
+    }
+    if (type == Instant.class) {
+      Instant now = Instant.now();
+      return name.equals("upto") ? now : now.minus(1, ChronoUnit.HOURS);
+    }
+    if (Collection.class.isAssignableFrom(type)) {
+      return name.contains("name")
+          ? List.of(sampleStudentName.toLowerCase(Locale.ROOT)) : sampleStudentIds;
+    }
+    if (type == String.class) {
+      if (name.contains("color")) {
+        return sampleFacultyColor;
+      }
+      if (name.contains("gender")) {
+        return "М";
+      }
+      if (name.contains("hash")) {
+        return "0".repeat(64);
+      }
+      return sampleStudentName;
+    }
+    if (type == Long.class || type == long.class) {
+      if (name.equals("afterid") || name.equals("cursor") || name.equals("offset")) {
+        return 0L;
+      }
+      if (name.contains("faculty") || repository == FacultyRepository.class) {
+        return sampleFacultyId;
+      }
+      return repository == AvatarRepository.class ? sampleAvatarStudentId : sampleStudentId;
+    }
+    if (type == Integer.class || type == int.class) {
+      if (name.equals("size")) {
+        return PAGE_SIZE;
+      }
+      return name.equals("offset") ? 0 : 14;
+    }
+    throw new IllegalStateException("Нет тестового значения для параметра " + name + " метода "
+        + repository.getSimpleName() + "." + method.getName()
+        + " — добавьте его в QueryPlanRegressionTest");
+  }
+
+  private Object beanOf(Class<?> repository) {
+    if (repository == StudentRepository.class) {
+      return studentRepository;
+    }
+    return repository == FacultyRepository.class ? facultyRepository : avatarRepository;
+  }
+
+  // Потоки читаются внутри транзакции, иначе курсор не откроется
+  private static void consume(Object result) {
+    if (result instanceof Stream<?> stream) {
+      try (stream) {
+        stream.limit(PAGE_SIZE).forEach(row -> {
+        });
+      }
+    }
+  }
+
+  private static void collectSeqScans(JsonNode node, List<String> relations) {
+    if ("Seq Scan".equals(node.path("Node Type").asText())) {
+      relations.add(node.path("Relation Name").asText());
+    }
+    for (JsonNode child : node.path("Plans")) {
+      collectSeqScans(child, relations);
+    }
+  }
+
+  private static boolean usesIndex(JsonNode node, String index) {
+    if (index.equals(node.path("Index Name").asText())) {
+      return true;
+    }
+    for (JsonNode child : node.path("Plans")) {
+      if (usesIndex(child, index)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean indexExists(String index) {
+    return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+        "SELECT to_regclass(?) IS NOT NULL", Boolean.class, index));
+  }
+
+  private long relationRows(String relation) {
+    return relationRows.computeIfAbsent(relation, name -> jdbcTemplate.queryForObject(
+        "SELECT COALESCE(MAX(reltuples), 0)::bigint FROM pg_class WHERE oid = to_regclass(?)",
+        Long.class, name));
+  }
+
+  private record CapturedPlan(String sql, JsonNode plan) {
+
+  }
+
+  // Запоминает параметры запроса и перед его выполнением снимает план с теми же параметрами
+  private static final class StatementHandler implements InvocationHandler {
+
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final String sql;
+    private final Map<Integer, Object[]> parameters = new LinkedHashMap<>();
+    private final Map<Integer, Method> setters = new HashMap<>();
+
+    private StatementHandler(Connection connection, PreparedStatement statement, String sql) {
+      this.connection = connection;
+      this.statement = statement;
+      this.sql = sql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (name.startsWith("set") && args != null && args.length >= 2
+          && method.getDeclaringClass() == PreparedStatement.class
+          && method.getParameterTypes()[0] == int.class) {
+        parameters.put((Integer) args[0], args);
+        setters.put((Integer) args[0], method);
+      } else if ("clearParameters".equals(name)) {
+        parameters.clear();
+        setters.clear();
+      } else if ((args == null || args.length == 0) && CAPTURE.get() != null
+          && (name.equals("executeQuery") || name.equals("executeUpdate")
+          || name.equals("execute") || name.equals("executeLargeUpdate"))) {
+        explain();
+      }
+      return QueryPlanRegressionTest.invoke(method, statement, args);
+    }
+
+    private void explain() throws Exception {
+      try (PreparedStatement explain = connection.prepareStatement(
+          "EXPLAIN (FORMAT JSON) " + sql)) {
+        for (Map.Entry<Integer, Object[]> entry : parameters.entrySet()) {
+          setters.get(entry.getKey()).invoke(explain, entry.getValue());
+        }
+        try (ResultSet resultSet = explain.executeQuery()) {
+          resultSet.next();
+          CAPTURE.get().add(new CapturedPlan(sql,
+              OBJECT_MAPPER.readTree(resultSet.getString(1))));
+        }
+      }
+    }
+  }
+
+  private static final class ConnectionHandler implements InvocationHandler {
+
+    private final Connection connection;
+
+    private ConnectionHandler(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = QueryPlanRegressionTest.invoke(method, connection, args);
+      if ("prepareStatement".equals(method.getName())
+          && result instanceof PreparedStatement statement) {
+        return proxy(PreparedStatement.class,
+            new StatementHandler(connection, statement, (String) args[0]));
+      }
+      return result;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(QueryPlanRegressionTest.class.getClassLoader(),
+        new Class<?>[]{type}, handler);
+  }
+
+  // Вызов через отражение без обёртки InvocationTargetException
+  private static Object invoke(Method method, Object target, Object[] args) {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause() instanceof RuntimeException runtime ? runtime
+          : new IllegalStateException(e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}//class
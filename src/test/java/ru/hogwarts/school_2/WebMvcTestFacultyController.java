@@ -1,6 +1,7 @@
 package ru.hogwarts.school_2;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -17,8 +18,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
 import ru.hogwarts.school_2.controller.FacultyController;
 import ru.hogwarts.school_2.dto.FacultyDTO;
+import ru.hogwarts.school_2.dto.FacultyOverviewDTO;
+import ru.hogwarts.school_2.dto.StudentDTO;
 import ru.hogwarts.school_2.model.Faculty;
 import ru.hogwarts.school_2.service.FacultyService;
 
@@ -259,4 +263,29 @@ class WebMvcTestFacultyController {
     verify(facultyService, times(1)).getFacultyById(id);
     verify(facultyService, never()).deleteFacultyById(id);
   }
-}//
\ No newline at end of file
+
+  @Test
+  void getFacultyOverview_возвращаетСводкуСоСпискомСтудентов() {
+    ReflectionTestUtils.setField(facultyController, "maxPageSize", 500);
+    FacultyOverviewDTO overview = new FacultyOverviewDTO(1L, "Гриффиндор", "Красный", 2, 12.5,
+        1, 1, List.of(new StudentDTO(5L, "Гарри", 12, "М", 1L)));
+
+    when(facultyService.getFacultyOverview(true, 0, 20)).thenReturn(List.of(overview));
+
+    ResponseEntity<List<FacultyOverviewDTO>> response =
+        facultyController.getFacultyOverview(true, 0, 20);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(List.of(overview), response.getBody());
+    verify(facultyService, times(1)).getFacultyOverview(true, 0, 20);
+  }
+
+  @Test
+  void getFacultyOverview_отклоняетСлишкомБольшуюСтраницу() {
+    ReflectionTestUtils.setField(facultyController, "maxPageSize", 500);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> facultyController.getFacultyOverview(true, 0, 501));
+    verify(facultyService, never()).getFacultyOverview(true, 0, 501);
+  }
+}//
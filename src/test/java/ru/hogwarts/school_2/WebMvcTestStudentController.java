@@ -9,6 +9,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,12 +17,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.crossstore.ChangeSetPersister.NotFoundException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import ru.hogwarts.school_2.controller.StudentController;
+import ru.hogwarts.school_2.dto.StudentBatchDTO;
 import ru.hogwarts.school_2.dto.StudentDTO;
 import ru.hogwarts.school_2.model.Faculty;
 import ru.hogwarts.school_2.model.Student;
@@ -138,25 +146,58 @@ public class WebMvcTestStudentController {
     assertTrue(response.getBody().isEmpty());
   }
 
+  @Test
+  void getStudentsPage_shouldReturnPage() {
+    Pageable pageable = PageRequest.of(0, 2, Sort.by("name"));
+    Page<StudentDTO> page = new PageImpl<>(List.of(
+        new StudentDTO(2L, "Гермиона Грейнджер", 11, "Ж", 1L),
+        new StudentDTO(1L, "Гарри Поттер", 11, "М", 1L)), pageable, 3);
+
+    when(studentService.getStudentsPage(pageable)).thenReturn(page);
+
+    ResponseEntity<Page<StudentDTO>> response = studentController.getStudentsPage(pageable);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(2, response.getBody().getNumberOfElements());
+    assertEquals(3, response.getBody().getTotalElements());
+    assertEquals("Гермиона Грейнджер", response.getBody().getContent().get(0).getName());
+  }
+
+  @Test
+  void getStudentsByIds_shouldKeepRequestOrderAndReportMissing() {
+    ReflectionTestUtils.setField(studentController, "batchMaxIds", 10);
+    List<Long> ids = List.of(3L, 1L, 7L);
+    StudentBatchDTO batch = new StudentBatchDTO(List.of(
+        new StudentDTO(3L, "Рон Уизли", 12, "М", 1L),
+        new StudentDTO(1L, "Гарри Поттер", 11, "М", 1L)), List.of(7L));
+
+    when(studentService.findStudentsByIds(ids)).thenReturn(batch);
+
+    ResponseEntity<StudentBatchDTO> response = studentController.getStudentsByIds(ids);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(3L, response.getBody().getStudents().get(0).getId());
+    assertEquals(List.of(7L), response.getBody().getMissingIds());
+  }
+
   @Test
   void getStudentById_shouldReturnStudent() {
     Long id = 1L;
-    Student student = new Student("Гарри Поттер", 11, "М");
-    student.setId(id);
+    StudentDTO student = new StudentDTO(id, "Гарри Поттер", 11, "М", null);
 
-    when(studentService.getStudentById(id)).thenReturn(Optional.of(student));
+    when(studentService.findStudentDtoById(id)).thenReturn(Optional.of(student));
 
     ResponseEntity<StudentDTO> response = studentController.getStudentById(id);
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    assertEquals(StudentDTO.fromStudent(student), response.getBody());
+    assertEquals(student, response.getBody());
     assertEquals("М", response.getBody().getGender());
   }
 
   @Test
   void getStudentById_shouldReturnNotFound() {
     Long id = 999L;
-    when(studentService.getStudentById(id)).thenReturn(Optional.empty());
+    when(studentService.findStudentDtoById(id)).thenReturn(Optional.empty());
 
     ResponseEntity<StudentDTO> response = studentController.getStudentById(id);
 
@@ -166,8 +207,7 @@ public class WebMvcTestStudentController {
   @Test
   void getStudentsByName_shouldReturnFilteredList() {
     String name = "Гарри";
-    Student student = new Student("Гарри Поттер", 11, "М");
-    student.setId(1L);
+    StudentDTO student = new StudentDTO(1L, "Гарри Поттер", 11, "М", null);
 
     when(studentService.findByNameContainingIgnoreCase(name)).thenReturn(List.of(student));
 
@@ -300,12 +340,9 @@ public class WebMvcTestStudentController {
     Student student6 = new Student("Галя Галина", 25, "Ж");
     student6.setId(6L);
 
-    when(studentService.getStudentById(1L)).thenReturn(Optional.of(student1));
-    when(studentService.getStudentById(2L)).thenReturn(Optional.of(student2));
-    when(studentService.getStudentById(3L)).thenReturn(Optional.of(student3));
-    when(studentService.getStudentById(4L)).thenReturn(Optional.of(student4));
-    when(studentService.getStudentById(5L)).thenReturn(Optional.of(student5));
-    when(studentService.getStudentById(6L)).thenReturn(Optional.of(student6));
+    when(studentService.findStudentsByIds(List.of(1L, 2L, 3L, 4L, 5L, 6L)))
+        .thenReturn(new StudentBatchDTO(Stream.of(student1, student2, student3, student4,
+            student5, student6).map(StudentDTO::fromStudent).toList(), List.of()));
 
     ResponseEntity<Void> response = studentController.printStudentNamesParallel();
 
@@ -328,12 +365,9 @@ public class WebMvcTestStudentController {
     Student student6 = new Student("Галя Галина", 25, "Ж");
     student6.setId(6L);
 
-    when(studentService.getStudentById(1L)).thenReturn(Optional.of(student1));
-    when(studentService.getStudentById(2L)).thenReturn(Optional.of(student2));
-    when(studentService.getStudentById(3L)).thenReturn(Optional.of(student3));
-    when(studentService.getStudentById(4L)).thenReturn(Optional.of(student4));
-    when(studentService.getStudentById(5L)).thenReturn(Optional.of(student5));
-    when(studentService.getStudentById(6L)).thenReturn(Optional.of(student6));
+    when(studentService.findStudentsByIds(List.of(1L, 2L, 3L, 4L, 5L, 6L)))
+        .thenReturn(new StudentBatchDTO(Stream.of(student1, student2, student3, student4,
+            student5, student6).map(StudentDTO::fromStudent).toList(), List.of()));
 
     // Act
     ResponseEntity<Void> response = studentController.printStudentNamesSynchronized();
@@ -0,0 +1,167 @@
+package ru.hogwarts.school_2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school_2.dto.AvatarCacheStatsDTO;
+import ru.hogwarts.school_2.service.AvatarCache.Entry;
+import ru.hogwarts.school_2.service.AvatarCache.Key;
+
+class AvatarCacheTest {
+
+  @Test
+  void put_вытесняетДавноНеИспользованныеЗаписи() {
+    AvatarCache cache = new AvatarCache(300, 100);
+    put(cache, new Key(1, 0), entry(100));
+    put(cache, new Key(2, 0), entry(100));
+    put(cache, new Key(3, 0), entry(100));
+
+    // Чтение переносит запись 1 в конец очереди, первой вытесняется 2
+    assertNotNull(cache.get(new Key(1, 0)));
+    put(cache, new Key(4, 0), entry(100));
+
+    assertNull(cache.get(new Key(2, 0)));
+    assertNotNull(cache.get(new Key(1, 0)));
+    assertNotNull(cache.get(new Key(3, 0)));
+    assertNotNull(cache.get(new Key(4, 0)));
+    AvatarCacheStatsDTO stats = cache.getStats();
+    assertEquals(1, stats.getEvictions());
+    assertEquals(3, stats.getEntries());
+    assertEquals(300, stats.getUsedBytes());
+  }
+
+  @Test
+  void put_большаяЗаписьВытесняетНесколькоМаленьких() {
+    AvatarCache cache = new AvatarCache(250, 200);
+    put(cache, new Key(1, 0), entry(50));
+    put(cache, new Key(2, 0), entry(50));
+    put(cache, new Key(3, 0), entry(100));
+
+    put(cache, new Key(4, 0), entry(200));
+
+    assertNull(cache.get(new Key(1, 0)));
+    assertNull(cache.get(new Key(2, 0)));
+    assertNull(cache.get(new Key(3, 0)));
+    assertNotNull(cache.get(new Key(4, 0)));
+    assertEquals(3, cache.getStats().getEvictions());
+    assertEquals(200, cache.getStats().getUsedBytes());
+  }
+
+  @Test
+  void put_заменаЗаписиПересчитываетЗанятыеБайты() {
+    AvatarCache cache = new AvatarCache(1000, 500);
+    Entry replacement = entry(30);
+    put(cache, new Key(1, 0), entry(100));
+    put(cache, new Key(1, 0), replacement);
+
+    assertSame(replacement, cache.get(new Key(1, 0)));
+    assertEquals(1, cache.getStats().getEntries());
+    assertEquals(30, cache.getStats().getUsedBytes());
+    assertEquals(0, cache.getStats().getEvictions());
+  }
+
+  @Test
+  void put_слишкомБольшиеИПустыеЗаписиНеКэшируются() {
+    AvatarCache cache = new AvatarCache(1000, 100);
+    assertTrue(cache.isCacheable(100));
+    assertFalse(cache.isCacheable(101));
+    assertFalse(cache.isCacheable(0));
+
+    put(cache, new Key(1, 0), entry(101));
+    put(cache, new Key(2, 0), entry(0));
+
+    assertEquals(0, cache.getStats().getEntries());
+    assertEquals(0, cache.getStats().getUsedBytes());
+  }
+
+  @Test
+  void isCacheable_предельныйРазмерЗаписиНеБольшеОбъёмаКэша() {
+    AvatarCache cache = new AvatarCache(100, 500);
+    assertTrue(cache.isCacheable(100));
+    assertFalse(cache.isCacheable(101));
+  }
+
+  @Test
+  void invalidate_убираетВсеРазмерыАватараСтудента() {
+    AvatarCache cache = new AvatarCache(1000, 500);
+    put(cache, new Key(1, 0), entry(100));
+    put(cache, new Key(1, 64), entry(10));
+    put(cache, new Key(1, 256), entry(40));
+    put(cache, new Key(2, 0), entry(100));
+
+    cache.invalidate(1);
+
+    assertNull(cache.get(new Key(1, 0)));
+    assertNull(cache.get(new Key(1, 64)));
+    assertNull(cache.get(new Key(1, 256)));
+    assertNotNull(cache.get(new Key(2, 0)));
+    assertEquals(1, cache.getStats().getEntries());
+    assertEquals(100, cache.getStats().getUsedBytes());
+    // Сброс — не вытеснение
+    assertEquals(0, cache.getStats().getEvictions());
+  }
+
+  @Test
+  void getStats_считаетПопаданияИПромахи() {
+    AvatarCache cache = new AvatarCache(1000, 500);
+    assertEquals(0.0, cache.getStats().getHitRate());
+
+    put(cache, new Key(1, 0), entry(10));
+    cache.get(new Key(1, 0));
+    cache.get(new Key(1, 0));
+    cache.get(new Key(1, 0));
+    cache.get(new Key(2, 0));
+
+    AvatarCacheStatsDTO stats = cache.getStats();
+    assertEquals(3, stats.getHits());
+    assertEquals(1, stats.getMisses());
+    assertEquals(0.75, stats.getHitRate());
+    assertEquals(1000, stats.getMaxBytes());
+  }
+
+  @Test
+  void put_сбросВоВремяЧтенияНеДаётВернутьСтаруюКартинку() {
+    AvatarCache cache = new AvatarCache(1000, 500);
+    Key key = new Key(1, 0);
+
+    // Читатель промахнулся и начал читать старую картинку
+    long generation = cache.generation(1);
+    // Тем временем загрузка новой зафиксирована и сбросила кэш
+    cache.invalidate(1);
+    cache.put(key, entry(100), generation);
+
+    assertNull(cache.get(key));
+    assertEquals(0, cache.getStats().getUsedBytes());
+
+    // Следующее чтение уже после сброса кэшируется как обычно
+    Entry fresh = entry(100);
+    cache.put(key, fresh, cache.generation(1));
+    assertSame(fresh, cache.get(key));
+  }
+
+  @Test
+  void put_сбросДругогоСтудентаНеМешаетКэшированию() {
+    AvatarCache cache = new AvatarCache(1000, 500);
+    long generation = cache.generation(1);
+
+    cache.invalidate(2);
+    cache.put(new Key(1, 0), entry(100), generation);
+
+    assertNotNull(cache.get(new Key(1, 0)));
+  }
+
+  private static void put(AvatarCache cache, Key key, Entry entry) {
+    cache.put(key, entry, cache.generation(key.studentId()));
+  }
+
+  private static Entry entry(int bytes) {
+    return new Entry(ByteBuffer.allocateDirect(bytes), "image/png", 0L, "\"etag\"");
+  }
+
+}//class
@@ -0,0 +1,70 @@
+package ru.hogwarts.school_2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class AvatarMediaTypesTest {
+
+  @Test
+  void detect_распознаётСигнатуры() {
+    assertEquals("image/jpeg", detect(0xFF, 0xD8, 0xFF, 0xE0, 0x00, 0x10, 'J', 'F', 'I', 'F'));
+    assertEquals("image/png", detect(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D));
+    assertEquals("image/gif", detect('G', 'I', 'F', '8', '9', 'a'));
+    assertEquals("image/gif", detect('G', 'I', 'F', '8', '7', 'a'));
+    assertEquals("image/webp", detect('R', 'I', 'F', 'F', 0x24, 0, 0, 0, 'W', 'E', 'B', 'P'));
+    assertEquals("image/bmp", detect('B', 'M', 0x36, 0, 0, 0));
+  }
+
+  @Test
+  void detect_неКартинкаНеРаспознаётся() {
+    assertNull(detect('%', 'P', 'D', 'F', '-', '1', '.', '7'));
+    assertNull(AvatarMediaTypes.detect("<svg xmlns=".getBytes(StandardCharsets.US_ASCII), 11));
+    // RIFF без WEBP — например, WAV
+    assertNull(detect('R', 'I', 'F', 'F', 0x24, 0, 0, 0, 'W', 'A', 'V', 'E'));
+    // Похоже на PNG, но сигнатура испорчена
+    assertNull(detect(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x00));
+  }
+
+  @Test
+  void detect_учитываетТолькоПрочитанныеБайты() {
+    byte[] png = bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A);
+    byte[] head = Arrays.copyOf(png, AvatarMediaTypes.SIGNATURE_LENGTH);
+
+    assertEquals("image/png", AvatarMediaTypes.detect(head, png.length));
+    // Файл короче сигнатуры: хвост буфера не должен её «дополнять»
+    assertNull(AvatarMediaTypes.detect(head, 4));
+    assertNull(AvatarMediaTypes.detect(new byte[AvatarMediaTypes.SIGNATURE_LENGTH], 0));
+    // RIFF....WEBP требует всех 12 байт
+    byte[] webp = bytes('R', 'I', 'F', 'F', 0x24, 0, 0, 0, 'W', 'E', 'B', 'P');
+    assertNull(AvatarMediaTypes.detect(webp, 11));
+  }
+
+  @Test
+  void extension_дляКаждогоРаспознаваемогоТипа() {
+    assertEquals("jpg", AvatarMediaTypes.extension("image/jpeg"));
+    assertEquals("png", AvatarMediaTypes.extension("image/png"));
+    assertEquals("gif", AvatarMediaTypes.extension("image/gif"));
+    assertEquals("webp", AvatarMediaTypes.extension("image/webp"));
+    assertEquals("bmp", AvatarMediaTypes.extension("image/bmp"));
+    assertNull(AvatarMediaTypes.extension("image/svg+xml"));
+  }
+
+  private static String detect(int... signature) {
+    byte[] head = Arrays.copyOf(bytes(signature),
+        Math.max(signature.length, AvatarMediaTypes.SIGNATURE_LENGTH));
+    return AvatarMediaTypes.detect(head, signature.length);
+  }
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+}//class
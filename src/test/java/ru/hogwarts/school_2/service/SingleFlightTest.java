@@ -0,0 +1,163 @@
+package ru.hogwarts.school_2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  private static final int WAITERS = 8;
+
+  private final AtomicInteger loads = new AtomicInteger();
+  private final CountDownLatch loaderStarted = new CountDownLatch(1);
+  private final CountDownLatch releaseLoader = new CountDownLatch(1);
+
+  @Test
+  void load_одновременныеЗапросыОдногоКлючаЗагружаютсяОдинРаз() throws Exception {
+    SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(30));
+    Function<Long, String> loader = blockingLoader(key -> "студент " + key);
+
+    List<Call> calls = new ArrayList<>();
+    calls.add(Call.start(() -> singleFlight.load(1L, loader)));
+    assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < WAITERS; i++) {
+      calls.add(Call.start(() -> singleFlight.load(1L, loader)));
+    }
+    awaitWaiting(calls.subList(1, calls.size()));
+    assertEquals(1, singleFlight.inFlight());
+
+    releaseLoader.countDown();
+    for (Call call : calls) {
+      assertEquals("студент 1", call.result());
+    }
+    assertEquals(1, loads.get());
+    assertEquals(0, singleFlight.inFlight());
+  }
+
+  @Test
+  void load_исключениеЗагрузкиПолучаютВсеОжидающие() throws Exception {
+    SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(30));
+    IllegalStateException failure = new IllegalStateException("база недоступна");
+    Function<Long, String> loader = blockingLoader(key -> {
+      throw failure;
+    });
+
+    List<Call> calls = new ArrayList<>();
+    calls.add(Call.start(() -> singleFlight.load(1L, loader)));
+    assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < WAITERS; i++) {
+      calls.add(Call.start(() -> singleFlight.load(1L, loader)));
+    }
+    awaitWaiting(calls.subList(1, calls.size()));
+
+    releaseLoader.countDown();
+    for (Call call : calls) {
+      assertSame(failure, assertThrows(IllegalStateException.class, call::result));
+    }
+    assertEquals(1, loads.get());
+    assertEquals(0, singleFlight.inFlight());
+  }
+
+  @Test
+  void load_разныеКлючиНеЖдутДругДруга() {
+    SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(30));
+
+    assertEquals("1", singleFlight.load(1L, String::valueOf));
+    assertEquals("2", singleFlight.load(2L, String::valueOf));
+    assertEquals(0, singleFlight.inFlight());
+  }
+
+  @Test
+  void load_результатНеКэшируется() {
+    SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(30));
+    Function<Long, String> loader = key -> "загрузка " + loads.incrementAndGet();
+
+    assertEquals("загрузка 1", singleFlight.load(1L, loader));
+    assertEquals("загрузка 2", singleFlight.load(1L, loader));
+  }
+
+  @Test
+  void load_зависшуюЗагрузкуЖдутНеДольшеТаймаута() throws Exception {
+    SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofMillis(50));
+    Call leader = Call.start(() -> singleFlight.load(1L, blockingLoader(key -> "первая")));
+    assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+    assertEquals("своя", singleFlight.load(1L, key -> "своя"));
+
+    releaseLoader.countDown();
+    assertEquals("первая", leader.result());
+    assertEquals(0, singleFlight.inFlight());
+  }
+
+  // Загрузка, которая сообщает о старте и ждёт releaseLoader
+  private Function<Long, String> blockingLoader(Function<Long, String> value) {
+    return key -> {
+      loads.incrementAndGet();
+      loaderStarted.countDown();
+      try {
+        if (!releaseLoader.await(5, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("Тест не отпустил загрузку");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+      return value.apply(key);
+    };
+  }
+
+  // Ждёт, пока все потоки встанут в ожидание чужой загрузки
+  private static void awaitWaiting(List<Call> calls) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    for (Call call : calls) {
+      while (call.thread.getState() != Thread.State.TIMED_WAITING) {
+        assertTrue(System.nanoTime() < deadline, "Поток не дождался загрузки: " + call.thread);
+        Thread.sleep(1);
+      }
+    }
+  }
+
+  private static final class Call {
+
+    private final AtomicReference<String> value = new AtomicReference<>();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private final Thread thread;
+
+    private Call(Supplier<String> body) {
+      thread = new Thread(() -> {
+        try {
+          value.set(body.get());
+        } catch (RuntimeException e) {
+          failure.set(e);
+        }
+      });
+    }
+
+    private static Call start(Supplier<String> body) {
+      Call call = new Call(body);
+      call.thread.start();
+      return call;
+    }
+
+    private String result() throws InterruptedException {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+      if (failure.get() != null) {
+        throw failure.get();
+      }
+      return value.get();
+    }
+  }
+
+}//class
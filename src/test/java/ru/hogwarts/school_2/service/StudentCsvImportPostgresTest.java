@@ -0,0 +1,157 @@
+package ru.hogwarts.school_2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school_2.dto.StudentBulkResultDTO;
+import ru.hogwarts.school_2.dto.StudentRowErrorDTO;
+
+// Импорт CSV целиком: COPY во временную таблицу и запросы над ней работают только
+// в PostgreSQL, поэтому тест идёт на той же локальной базе, что и проверка планов
+// (задача queryPlanTest, без queryPlans.url пропускается). Каждый тест откатывается
+@SpringBootTest
+@ActiveProfiles("query-plans")
+@Tag("postgres")
+@EnabledIfSystemProperty(named = "queryPlans.url", matches = ".+")
+@Transactional
+class StudentCsvImportPostgresTest {
+
+  // allocationSize у Student и шаг student_id_seq
+  private static final int ID_BLOCK_SIZE = 50;
+
+  @Autowired
+  private StudentCsvImportService studentCsvImportService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  // Имена уникальны для каждого теста: в базе могут быть студенты от других проверок.
+  // Регистр в проверках без учёта регистра меняется только у латинской части имени:
+  // lower() в базе с локалью C не знает кириллицу
+  private String prefix;
+  private long facultyId;
+
+  @BeforeEach
+  void createFaculty() {
+    prefix = "csv-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+    facultyId = jdbcTemplate.queryForObject(
+        "INSERT INTO faculty (name, color) VALUES (?, 'Красный') RETURNING id", Long.class,
+        prefix + "faculty");
+  }
+
+  @Test
+  void importCsv_номераСтрокОшибок_считаютЗаписиСЗаголовком() {
+    String csv = "name,age,gender,facultyId\n"
+        + "\"" + prefix + "Поттер, Гарри\",12,м," + facultyId + "\n"
+        + "\"" + prefix + "Рон\nУизли\",12,м," + facultyId + "\n"
+        + prefix + "Гермиона,abc,ж," + facultyId + "\n"
+        + "\"" + prefix.toUpperCase() + "Поттер, Гарри\",13,м," + facultyId + "\n"
+        + prefix + "Драко,12,м,-1\n"
+        + "\n"
+        + prefix + "Невилл,12,м," + facultyId + "\n";
+
+    StudentBulkResultDTO result = importCsv(csv, true, false);
+
+    assertEquals(3, result.getCreated());
+    assertEquals(0, result.getUpdated());
+    // Запись с переводом строки в имени — одна запись (третья), хотя занимает две строки файла
+    assertEquals(List.of(
+            new StudentRowErrorDTO(4, prefix + "Гермиона", "Возраст должен быть числом"),
+            new StudentRowErrorDTO(5, prefix.toUpperCase() + "Поттер, Гарри",
+                "Имя повторяется в загружаемом списке"),
+            new StudentRowErrorDTO(6, prefix + "Драко", "Факультет с ID -1 не найден")),
+        result.getErrors());
+    assertEquals(List.of(prefix + "Невилл", prefix + "Поттер, Гарри", prefix + "Рон\nУизли"),
+        jdbcTemplate.queryForList(
+            "SELECT name FROM student WHERE name LIKE ? ORDER BY name COLLATE \"C\"",
+            String.class, prefix + "%"));
+  }
+
+  @Test
+  void importCsv_безUpsert_существующееИмяОтклоняется() {
+    insertStudent(prefix + "Гарри", 11);
+
+    StudentBulkResultDTO result = importCsv(prefix.toUpperCase() + "Гарри,15,ж," + facultyId + "\n",
+        false, false);
+
+    assertEquals(0, result.getCreated());
+    assertEquals(List.of(new StudentRowErrorDTO(1, prefix.toUpperCase() + "Гарри",
+        "Студент с таким именем уже существует!")), result.getErrors());
+    assertEquals(11, jdbcTemplate.queryForObject(
+        "SELECT age FROM student WHERE name = ?", Integer.class, prefix + "Гарри"));
+  }
+
+  @Test
+  void importCsv_upsert_обновляетСуществующегоИДобавляетНового() {
+    insertStudent(prefix + "Гарри", 11);
+
+    StudentBulkResultDTO result = importCsv(prefix.toUpperCase() + "Гарри,15,ж," + facultyId + "\n"
+        + prefix + "Рон,12,м," + facultyId + "\n", false, true);
+
+    assertEquals(1, result.getCreated());
+    assertEquals(1, result.getUpdated());
+    assertTrue(result.getErrors().isEmpty());
+
+    assertEquals(1L, jdbcTemplate.queryForObject(
+        "SELECT count(*) FROM student WHERE lower(name) = lower(?)", Long.class, prefix + "Гарри"));
+    Map<String, Object> updated = jdbcTemplate.queryForMap(
+        "SELECT age, gender, updated_at > now() AS restamped FROM student WHERE name = ?",
+        prefix + "Гарри");
+    assertEquals(15, ((Number) updated.get("age")).intValue());
+    assertEquals("Ж", updated.get("gender"));
+    // clock_timestamp(): время записи, а не начала транзакции (now())
+    assertEquals(Boolean.TRUE, updated.get("restamped"));
+  }
+
+  @Test
+  void importCsv_idВыдаютсяБлокамиКакУHibernatePooledLo() {
+    int rows = 2 * ID_BLOCK_SIZE + 20;
+    StringBuilder csv = new StringBuilder();
+    for (int i = 0; i < rows; i++) {
+      csv.append(prefix).append(String.format("%03d", i)).append(",12,м,").append(facultyId)
+          .append('\n');
+    }
+
+    StudentBulkResultDTO result = importCsv(csv.toString(), false, false);
+    assertEquals(rows, result.getCreated());
+
+    List<Long> ids = jdbcTemplate.queryForList(
+        "SELECT id FROM student WHERE name LIKE ? ORDER BY name COLLATE \"C\"", Long.class,
+        prefix + "%");
+    long next = jdbcTemplate.queryForObject("SELECT nextval('student_id_seq')", Long.class);
+    for (int i = 0; i < rows; i++) {
+      long blockStart = ids.get(i - i % ID_BLOCK_SIZE);
+      // Внутри блока id идут подряд от значения последовательности
+      assertEquals(blockStart + i % ID_BLOCK_SIZE, ids.get(i), "строка " + i);
+      // Каждый блок начинается со значения последовательности: следующее значение
+      // отстоит от него на целое число шагов, значит блоки Hibernate с ним не пересекутся
+      assertEquals(0, (next - blockStart) % ID_BLOCK_SIZE, "строка " + i);
+      assertTrue(next > ids.get(i), "строка " + i);
+    }
+  }
+
+  private StudentBulkResultDTO importCsv(String csv, boolean header, boolean upsert) {
+    return studentCsvImportService.importCsv(
+        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), header, upsert);
+  }
+
+  private void insertStudent(String name, int age) {
+    jdbcTemplate.update("INSERT INTO student (id, name, age, gender, faculty_id) "
+        + "VALUES (nextval('student_id_seq'), ?, ?, 'М', ?)", name, age, facultyId);
+  }
+
+}//class
@@ -0,0 +1,77 @@
+package ru.hogwarts.school_2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Разбор записей CSV (readRecord) без базы: сам импорт через COPY проверяет
+// StudentCsvImportPostgresTest на PostgreSQL
+class StudentCsvImportServiceTest {
+
+  @Test
+  void readRecord_делитЗаписьПоЗапятым() throws IOException {
+    assertEquals(List.of(List.of("Гарри", "12", "м", "1"), List.of("Гермиона", "13", "ж", "1")),
+        readAll("Гарри,12,м,1\nГермиона,13,ж,1\n"));
+  }
+
+  @Test
+  void readRecord_последняяЗаписьБезПереводаСтроки() throws IOException {
+    assertEquals(List.of(List.of("Гарри", "12"), List.of("Рон", "12")),
+        readAll("Гарри,12\nРон,12"));
+  }
+
+  @Test
+  void readRecord_запятаяВКавычкахНеРазделяетПоля() throws IOException {
+    assertEquals(List.of(List.of("Поттер, Гарри", "12", "м", "1")),
+        readAll("\"Поттер, Гарри\",12,м,1\n"));
+  }
+
+  @Test
+  void readRecord_переводСтрокиВКавычкахОстаётсяВПоле() throws IOException {
+    assertEquals(List.of(List.of("Гарри\nПоттер", "12"), List.of("Рон", "12")),
+        readAll("\"Гарри\nПоттер\",12\nРон,12\n"));
+    assertEquals(List.of(List.of("Гарри\r\nПоттер", "12")),
+        readAll("\"Гарри\r\nПоттер\",12\r\n"));
+  }
+
+  @Test
+  void readRecord_удвоенныеКавычкиСтановятсяОдной() throws IOException {
+    assertEquals(List.of(List.of("Гарри \"Избранный\" Поттер", "12")),
+        readAll("\"Гарри \"\"Избранный\"\" Поттер\",12\n"));
+    assertEquals(List.of(List.of("\"", "")), readAll("\"\"\"\",\"\"\n"));
+  }
+
+  @Test
+  void readRecord_пропускаетBomИВозвратКаретки() throws IOException {
+    assertEquals(List.of(List.of("name", "age"), List.of("Гарри", "12")),
+        readAll("\uFEFFname,age\r\nГарри,12\r\n"));
+  }
+
+  @Test
+  void readRecord_пустаяСтрокаДаётОдноПустоеПоле() throws IOException {
+    // Такие записи importCsv пропускает, номер записи при этом всё равно растёт
+    assertEquals(List.of(List.of("Гарри", "12"), List.of(""), List.of("Рон", "12")),
+        readAll("Гарри,12\n\nРон,12\n"));
+  }
+
+  @Test
+  void readRecord_пустойФайл() throws IOException {
+    assertEquals(List.of(), readAll(""));
+  }
+
+  private static List<List<String>> readAll(String csv) throws IOException {
+    BufferedReader reader = new BufferedReader(new StringReader(csv));
+    List<List<String>> records = new ArrayList<>();
+    List<String> fields;
+    while ((fields = StudentCsvImportService.readRecord(reader)) != null) {
+      records.add(fields);
+    }
+    return records;
+  }
+
+}//class
@@ -0,0 +1,145 @@
+package ru.hogwarts.school_2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.hogwarts.school_2.dto.StudentDTO;
+import ru.hogwarts.school_2.event.StudentChangedEvent;
+import ru.hogwarts.school_2.repository.StudentRepository;
+
+@ExtendWith(MockitoExtension.class)
+class StudentStatisticsTest {
+
+  @Mock
+  private StudentRepository studentRepository;
+
+  @InjectMocks
+  private StudentStatistics studentStatistics;
+
+  @Test
+  void reconcile_загружаетИтогиИзБазы() {
+    // [facultyId, count, ageSum], студенты без факультета — в строке с null
+    when(studentRepository.sumAgesByFaculty()).thenReturn(List.of(
+        new Object[]{1L, 2L, 25L},
+        new Object[]{2L, 1L, 12L},
+        new Object[]{null, 1L, 15L}));
+
+    studentStatistics.reconcile();
+
+    assertEquals(4, studentStatistics.getCount());
+    assertEquals(13.0, studentStatistics.getAverageAge());
+    assertEquals(2, studentStatistics.getCount(1L));
+    assertEquals(12.5, studentStatistics.getAverageAge(1L));
+    assertEquals(1, studentStatistics.getCount(2L));
+    assertEquals(0, studentStatistics.getCount(3L));
+    assertNull(studentStatistics.getAverageAge(3L));
+  }
+
+  @Test
+  void onStudentChanged_добавлениеИУдаление() {
+    StudentDTO harry = new StudentDTO(1L, "Гарри", 12, "м", 1L);
+    StudentDTO ron = new StudentDTO(2L, "Рон", 14, "м", 1L);
+
+    studentStatistics.onStudentChanged(new StudentChangedEvent(null, harry));
+    studentStatistics.onStudentChanged(new StudentChangedEvent(null, ron));
+
+    assertEquals(2, studentStatistics.getCount());
+    assertEquals(13.0, studentStatistics.getAverageAge());
+    assertEquals(2, studentStatistics.getCount(1L));
+
+    studentStatistics.onStudentChanged(new StudentChangedEvent(harry, null));
+    studentStatistics.onStudentChanged(new StudentChangedEvent(ron, null));
+
+    assertEquals(0, studentStatistics.getCount());
+    assertNull(studentStatistics.getAverageAge());
+    assertEquals(0, studentStatistics.getCount(1L));
+    assertNull(studentStatistics.getAverageAge(1L));
+  }
+
+  @Test
+  void onStudentChanged_изменениеПереноситСтудентаМеждуФакультетами() {
+    StudentDTO before = new StudentDTO(1L, "Гарри", 12, "м", 1L);
+    StudentDTO after = new StudentDTO(1L, "Гарри", 14, "м", 2L);
+    studentStatistics.onStudentChanged(new StudentChangedEvent(null, before));
+
+    studentStatistics.onStudentChanged(new StudentChangedEvent(before, after));
+
+    assertEquals(1, studentStatistics.getCount());
+    assertEquals(14.0, studentStatistics.getAverageAge());
+    assertEquals(0, studentStatistics.getCount(1L));
+    assertEquals(1, studentStatistics.getCount(2L));
+    assertEquals(14.0, studentStatistics.getAverageAge(2L));
+  }
+
+  @Test
+  void onStudentChanged_студентБезФакультетаСчитаетсяТолькоВШколе() {
+    studentStatistics.onStudentChanged(
+        new StudentChangedEvent(null, new StudentDTO(1L, "Гарри", 12, "м", null)));
+
+    assertEquals(1, studentStatistics.getCount());
+    assertEquals(0, studentStatistics.getCount(1L));
+  }
+
+  @Test
+  void reconcile_заменяетРазошедшиесяСБазойИтоги() {
+    when(studentRepository.sumAgesByFaculty()).thenReturn(
+        List.<Object[]>of(new Object[]{1L, 1L, 12L}),
+        List.<Object[]>of(new Object[]{1L, 3L, 39L}));
+    studentStatistics.reconcile();
+
+    // Изменение, о котором событие не пришло (другой экземпляр или прямой SQL),
+    // и событие, которое в базе уже отменено
+    studentStatistics.onStudentChanged(
+        new StudentChangedEvent(null, new StudentDTO(5L, "Драко", 17, "м", 2L)));
+    studentStatistics.reconcile();
+
+    assertEquals(3, studentStatistics.getCount());
+    assertEquals(13.0, studentStatistics.getAverageAge());
+    assertEquals(3, studentStatistics.getCount(1L));
+    assertEquals(0, studentStatistics.getCount(2L));
+  }
+
+  @Test
+  void reconcile_событиеВоВремяЗапросаПрименяетсяКЗагруженнымИтогам() {
+    StudentDTO draco = new StudentDTO(5L, "Драко", 17, "м", 2L);
+    when(studentRepository.sumAgesByFaculty()).thenAnswer(invocation -> {
+      // Студент добавлен и зафиксирован уже после того, как запрос прочитал данные
+      studentStatistics.onStudentChanged(new StudentChangedEvent(null, draco));
+      return List.<Object[]>of(new Object[]{1L, 2L, 25L});
+    });
+
+    studentStatistics.reconcile();
+
+    assertEquals(3, studentStatistics.getCount());
+    assertEquals(14.0, studentStatistics.getAverageAge());
+    assertEquals(2, studentStatistics.getCount(1L));
+    assertEquals(1, studentStatistics.getCount(2L));
+    assertEquals(17.0, studentStatistics.getAverageAge(2L));
+  }
+
+  @Test
+  void reconcile_запросСверкиВоВремяСверкиВыполняетсяПослеНеё() {
+    when(studentRepository.sumAgesByFaculty())
+        .thenAnswer(invocation -> {
+          studentStatistics.reconcile();
+          return List.<Object[]>of(new Object[]{1L, 1L, 12L});
+        })
+        .thenReturn(List.<Object[]>of(new Object[]{1L, 2L, 26L}));
+
+    studentStatistics.reconcile();
+
+    verify(studentRepository, times(2)).sumAgesByFaculty();
+    assertEquals(2, studentStatistics.getCount());
+    assertEquals(13.0, studentStatistics.getAverageAge(1L));
+  }
+
+}//class
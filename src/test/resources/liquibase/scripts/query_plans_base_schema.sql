@@ -0,0 +1,32 @@
+--liquibase formatted sql
+--changeset alexeychudinov:query_plans_base_schema
+--preconditions onFail:MARK_RAN onError:HALT
+--precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM information_schema.tables WHERE table_name IN ('faculty', 'student', 'avatar')
+
+-- Исходные таблицы до всех миграций, как их создавал Hibernate по первым версиям сущностей,
+-- дальше их доводят до нынешнего вида changeset'ы из changelog-master.yaml
+CREATE TABLE faculty
+(
+    id    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name  VARCHAR(50) NOT NULL UNIQUE,
+    color VARCHAR(30) NOT NULL
+);
+
+CREATE TABLE student
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       VARCHAR(255) NOT NULL,
+    age        INTEGER      NOT NULL,
+    gender     VARCHAR(1)   NOT NULL,
+    faculty_id BIGINT REFERENCES faculty (id)
+);
+
+CREATE TABLE avatar
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_path  VARCHAR(255) NOT NULL,
+    file_size  BIGINT       NOT NULL,
+    media_type VARCHAR(255) NOT NULL,
+    data       OID,
+    student_id BIGINT       NOT NULL REFERENCES student (id)
+);